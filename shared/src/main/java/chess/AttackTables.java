@@ -0,0 +1,214 @@
+package chess;
+
+/**
+ * Attack masks for every piece type, built once when the class is loaded.
+ * <p>
+ * Knights, kings and pawns only ever attack a fixed pattern around their square, so those are
+ * plain lookups. Rooks and bishops depend on what blocks their rays; for those we use "magic"
+ * bitboards: the blockers that matter are multiplied by a per-square magic number and the top
+ * bits of the product index straight into a table of precomputed attack sets. The magic numbers
+ * are constants, so loading the class only has to fill in the tables.
+ * Squares are numbered the same way as ChessBoard: 0 is a1, 63 is h8.
+ */
+final class AttackTables {
+
+    private static final long[] KNIGHT_ATTACKS = new long[64];
+    private static final long[] KING_ATTACKS = new long[64];
+    // Indexed by [color ordinal][square]
+    private static final long[][] PAWN_ATTACKS = new long[2][64];
+
+    private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final long[][] ROOK_ATTACKS = new long[64][];
+
+    // BETWEEN[a][b]: squares strictly between two squares on a shared rank, file or diagonal (0 otherwise).
+    // LINE[a][b]: the whole rank, file or diagonal through both squares (0 if they don't share one).
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final long[][] BISHOP_ATTACKS = new long[64][];
+
+    // Found offline by trial: for each square, a multiplier that maps every blocker subset of the relevant mask
+    // to a table slot without two subsets with different attack sets landing in the same slot.
+    private static final long[] ROOK_MAGICS = {
+            0x008000908064C000L, 0x0040200040001000L, 0x0180100080A0010AL, 0x8880041000800800L,
+            0x1200100201200804L, 0x0200020004011008L, 0x2180010000800600L, 0x0200005088210204L,
+            0x0000800080204001L, 0x1000804000802001L, 0x8240801000200080L, 0x8611001004200900L,
+            0x008180800C001800L, 0x0100800200800400L, 0x0A02000102000408L, 0x8020802300104280L,
+            0x0080004000402000L, 0xE010104000402000L, 0x0800808010002000L, 0xA280210008100100L,
+            0x0001818014000800L, 0xA002010100080400L, 0x0008040088020130L, 0x0001020004048845L,
+            0x0081826280004004L, 0x2020810900284000L, 0x0200100080802000L, 0x0200080080100080L,
+            0x8083080100100500L, 0x4406000901000400L, 0x0005020080800100L, 0x0090204200008114L,
+            0x0010400094800420L, 0x0900804000802002L, 0x0201001841002000L, 0x4100080080801000L,
+            0x4540040080800800L, 0x0000800400800200L, 0x9281800100808200L, 0x8004048102000854L,
+            0x4420802040008006L, 0x0880500020004002L, 0x0801200241050010L, 0x8400080010008080L,
+            0x0008000500090010L, 0x0082009084020008L, 0x4012000108020004L, 0x9000104D08860004L,
+            0x2004204114800100L, 0x0148802112400300L, 0x0202842000100880L, 0x001B080080900080L,
+            0x001A002008100600L, 0x0004008004020080L, 0x5181000600040300L, 0x0000044401128A00L,
+            0x8044110480002441L, 0x1023012082044112L, 0x00804080200A0012L, 0x000420310A004A42L,
+            0x0023001004020801L, 0x0882001008040102L, 0x000230088118020CL, 0x0000019025040042L
+    };
+    private static final long[] BISHOP_MAGICS = {
+            0x1010220204082A00L, 0x80E0020202002804L, 0x2008480104200020L, 0x000220920280002DL,
+            0x32040421000B0284L, 0x1002080404000400L, 0x0004160892080040L, 0x2203024206204201L,
+            0x0002404264010200L, 0x1120908408428124L, 0xB100424403002280L, 0x240008060440C288L,
+            0x2040040420490400L, 0x0100620210040022L, 0x0400084104202028L, 0x0010050080908820L,
+            0x0C90A04490824802L, 0x000200A008210130L, 0x0C08001000204010L, 0x0008000186014480L,
+            0x0601044820080021L, 0x0002000101013100L, 0x1400A08108080204L, 0x0250401104485410L,
+            0x4820240810142843L, 0x0009142A20182200L, 0x0848140048440020L, 0x2020120000400440L,
+            0x0108840200802003L, 0x0009070082009492L, 0x020C0C0038424245L, 0xCA44005808210410L,
+            0x8011212000500404L, 0x2028840510101008L, 0x0004042A00041400L, 0x0624020080980080L,
+            0x1820410040840040L, 0x2201004202050100L, 0x402A088A24040224L, 0x0242061040002400L,
+            0x90020202400821A0L, 0x00C9009004E01002L, 0x58C2060202023100L, 0x0000012214040800L,
+            0x0210846810100200L, 0x0004208081010200L, 0x01A4108404442100L, 0x8054082C80280106L,
+            0x0004144904104208L, 0x00324C0A11104000L, 0x1000020231040100L, 0x2080001042020004L,
+            0x0544021020288104L, 0x1103501408083020L, 0x4010451004960002L, 0x003010091C44902CL,
+            0x0102402884202000L, 0x0480804C00841086L, 0x04602C8602210400L, 0x0000004000420200L,
+            0x0040000020442C18L, 0x4483804089094100L, 0x80000B0248020400L, 0x0045010808008680L
+    };
+
+    static {
+        int[][] knightJumps = {{2, 1}, {2, -1}, {1, 2}, {1, -2}, {-1, 2}, {-1, -2}, {-2, 1}, {-2, -1}};
+        int[][] kingSteps = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+        for (int square = 0; square < 64; square++) {
+            KNIGHT_ATTACKS[square] = stepAttacks(square, knightJumps);
+            KING_ATTACKS[square] = stepAttacks(square, kingSteps);
+            PAWN_ATTACKS[ChessGame.TeamColor.WHITE.ordinal()][square] = stepAttacks(square, new int[][]{{1, 1}, {1, -1}});
+            PAWN_ATTACKS[ChessGame.TeamColor.BLACK.ordinal()][square] = stepAttacks(square, new int[][]{{-1, 1}, {-1, -1}});
+
+            initMagic(square, ROOK_DIRECTIONS, ROOK_MASKS, ROOK_MAGICS, ROOK_SHIFTS, ROOK_ATTACKS);
+            initMagic(square, BISHOP_DIRECTIONS, BISHOP_MASKS, BISHOP_MAGICS, BISHOP_SHIFTS, BISHOP_ATTACKS);
+        }
+        for (int a = 0; a < 64; a++) {
+            for (int b = 0; b < 64; b++) {
+                long bits = 1L << a | 1L << b;
+                if (a != b && (rookAttacks(a, 0L) & 1L << b) != 0) {
+                    BETWEEN[a][b] = rookAttacks(a, 1L << b) & rookAttacks(b, 1L << a);
+                    LINE[a][b] = (rookAttacks(a, 0L) & rookAttacks(b, 0L)) | bits;
+                } else if (a != b && (bishopAttacks(a, 0L) & 1L << b) != 0) {
+                    BETWEEN[a][b] = bishopAttacks(a, 1L << b) & bishopAttacks(b, 1L << a);
+                    LINE[a][b] = (bishopAttacks(a, 0L) & bishopAttacks(b, 0L)) | bits;
+                }
+            }
+        }
+    }
+
+    private AttackTables() {
+    }
+
+    static long knightAttacks(int square) {
+        return KNIGHT_ATTACKS[square];
+    }
+
+    static long kingAttacks(int square) {
+        return KING_ATTACKS[square];
+    }
+
+    /**
+     * @return the squares a pawn of the given color standing on square could capture on
+     */
+    static long pawnAttacks(ChessGame.TeamColor color, int square) {
+        return PAWN_ATTACKS[color.ordinal()][square];
+    }
+
+    static long rookAttacks(int square, long occupied) {
+        int index = (int) (((occupied & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square]);
+        return ROOK_ATTACKS[square][index];
+    }
+
+    static long bishopAttacks(int square, long occupied) {
+        int index = (int) (((occupied & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square]);
+        return BISHOP_ATTACKS[square][index];
+    }
+
+    static long queenAttacks(int square, long occupied) {
+        return rookAttacks(square, occupied) | bishopAttacks(square, occupied);
+    }
+
+    /**
+     * @return the squares strictly between a and b if they share a rank, file or diagonal, otherwise 0
+     */
+    static long between(int a, int b) {
+        return BETWEEN[a][b];
+    }
+
+    /**
+     * @return every square of the rank, file or diagonal running through a and b, or 0 if there is none
+     */
+    static long line(int a, int b) {
+        return LINE[a][b];
+    }
+
+    // Squares reachable with a single jump in each direction, skipping the ones that fall off the board
+    private static long stepAttacks(int square, int[][] steps) {
+        int row = square / 8;
+        int col = square % 8;
+        long attacks = 0L;
+        for (int[] step : steps) {
+            int r = row + step[0];
+            int c = col + step[1];
+            if (r >= 0 && r < 8 && c >= 0 && c < 8) {
+                attacks |= 1L << (r * 8 + c);
+            }
+        }
+        return attacks;
+    }
+
+    // Walks each ray until it leaves the board or hits a blocker (the blocker square is included)
+    private static long slowSliderAttacks(int square, long occupied, int[][] directions) {
+        long attacks = 0L;
+        for (int[] direction : directions) {
+            int r = square / 8 + direction[0];
+            int c = square % 8 + direction[1];
+            while (r >= 0 && r < 8 && c >= 0 && c < 8) {
+                long bit = 1L << (r * 8 + c);
+                attacks |= bit;
+                if ((occupied & bit) != 0) {
+                    break;
+                }
+                r += direction[0];
+                c += direction[1];
+            }
+        }
+        return attacks;
+    }
+
+    // The squares whose occupancy can change a slider's attacks: every ray square except the board edge
+    private static long relevantMask(int square, int[][] directions) {
+        long mask = 0L;
+        for (int[] direction : directions) {
+            int r = square / 8 + direction[0];
+            int c = square % 8 + direction[1];
+            while (r + direction[0] >= 0 && r + direction[0] < 8 && c + direction[1] >= 0 && c + direction[1] < 8) {
+                mask |= 1L << (r * 8 + c);
+                r += direction[0];
+                c += direction[1];
+            }
+        }
+        return mask;
+    }
+
+    private static void initMagic(int square, int[][] directions, long[] masks, long[] magics, int[] shifts,
+                                  long[][] attacks) {
+        long mask = relevantMask(square, directions);
+        int bits = Long.bitCount(mask);
+        long[] table = new long[1 << bits];
+
+        // Enumerate every subset of the mask with the carry-rippler trick
+        long subset = 0L;
+        do {
+            int index = (int) ((subset * magics[square]) >>> (64 - bits));
+            table[index] = slowSliderAttacks(square, subset, directions);
+            subset = (subset - mask) & mask;
+        } while (subset != 0);
+
+        masks[square] = mask;
+        shifts[square] = 64 - bits;
+        attacks[square] = table;
+    }
+}
@@ -0,0 +1,250 @@
+package chess;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Replays whole archives of games in parallel, checking every move and reporting how each game ended
+ */
+public final class BulkValidator {
+
+    /**
+     * How a replayed game stands after its last legal move
+     */
+    public enum Outcome {
+        IN_PROGRESS, CHECKMATE, STALEMATE, THREEFOLD_REPETITION, FIFTY_MOVE_RULE
+    }
+
+    /**
+     * The replay of one game
+     *
+     * @param plies           how many moves were played before the game ended or an illegal move was found
+     * @param firstIllegalPly index into the game's moves of the first illegal move, or -1 if all were legal
+     * @param outcome         the state of the game after the last move played
+     * @param finalKey        the Zobrist key of that position
+     */
+    public record Result(int plies, int firstIllegalPly, Outcome outcome, long finalKey) {
+
+        public boolean valid() {
+            return firstIllegalPly < 0;
+        }
+    }
+
+    /**
+     * The results of a bulk replay, in the order the games were given, with throughput totals
+     */
+    public record Report(List<Result> results, long moves, long nanos) {
+
+        public long games() {
+            return results.size();
+        }
+
+        public long invalidGames() {
+            return results.stream().filter(result -> !result.valid()).count();
+        }
+
+        public double gamesPerSecond() {
+            return nanos == 0 ? 0 : results.size() * 1_000_000_000.0 / nanos;
+        }
+
+        public double movesPerSecond() {
+            return nanos == 0 ? 0 : moves * 1_000_000_000.0 / nanos;
+        }
+    }
+
+    /**
+     * Totals for a replay whose results went to a callback instead of being collected
+     */
+    public record Summary(long games, long invalidGames, long moves, long nanos) {
+
+        public double gamesPerSecond() {
+            return nanos == 0 ? 0 : games * 1_000_000_000.0 / nanos;
+        }
+
+        public double movesPerSecond() {
+            return nanos == 0 ? 0 : moves * 1_000_000_000.0 / nanos;
+        }
+    }
+
+    // Games waiting for a worker, per worker
+    private static final int QUEUE_PER_THREAD = 64;
+    // Tells a worker there are no more games
+    private static final PgnReader.Game END_OF_GAMES = new PgnReader.Game(Map.of(), List.of(), "*");
+
+    // One game per worker thread, reset for each game it replays
+    private static final ThreadLocal<ChessGame> WORKER_GAME = ThreadLocal.withInitial(ChessGame::new);
+
+    private BulkValidator() {
+    }
+
+    /**
+     * Replays games from the starting position on the common fork/join pool
+     *
+     * @param games each game's moves, in order
+     */
+    public static Report validate(Stream<? extends List<ChessMove>> games) {
+        long start = System.nanoTime();
+        List<Result> results = games.parallel().map(BulkValidator::replay).toList();
+        long moves = 0;
+        for (Result result : results) {
+            moves += result.plies();
+        }
+        return new Report(results, moves, System.nanoTime() - start);
+    }
+
+    /**
+     * Replays games from the starting position on the given pool instead of the common one
+     */
+    public static Report validate(List<? extends List<ChessMove>> games, ForkJoinPool pool) {
+        //a parallel stream started from inside a pool runs its tasks in that pool
+        return pool.submit(() -> validate(games.stream())).join();
+    }
+
+    /**
+     * Replays one game from the starting position on the calling thread. Replay stops at the first illegal
+     * move, and moves after a checkmate or stalemate are illegal.
+     */
+    public static Result replay(List<ChessMove> moves) {
+        ChessGame game = WORKER_GAME.get();
+        Fen.load(Fen.START, game);
+        for (int ply = 0; ply < moves.size(); ply++) {
+            int move = game.legalMove(Move.fromChessMove(moves.get(ply)));
+            if (move < 0) {
+                return new Result(ply, ply, outcome(game), game.key());
+            }
+            game.doMove(move);
+        }
+        return new Result(moves.size(), -1, outcome(game), game.key());
+    }
+
+    /**
+     * Replays every game from a PGN reader on worker threads as it is read
+     *
+     * @param reader  where to read the games
+     * @param threads how many worker threads to replay on
+     * @param sink    called with each game and its result from the worker threads, so it has to be thread safe
+     * @return totals for the whole input
+     * @throws IOException if reading fails; a failure in a worker or the sink is rethrown instead
+     */
+    public static Summary replay(PgnReader reader, int threads, BiConsumer<PgnReader.Game, Result> sink)
+            throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        BlockingQueue<PgnReader.Game> queue = new ArrayBlockingQueue<>(threads * QUEUE_PER_THREAD);
+        LongAdder games = new LongAdder();
+        LongAdder invalidGames = new LongAdder();
+        LongAdder moves = new LongAdder();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                workers.add(pool.submit(() -> {
+                    for (PgnReader.Game game = queue.take(); game != END_OF_GAMES; game = queue.take()) {
+                        //after a failure only take games off the queue so the reading thread is never stuck
+                        if (failure.get() != null) {
+                            continue;
+                        }
+                        try {
+                            Result result = replay(game);
+                            games.increment();
+                            moves.add(result.plies());
+                            if (!result.valid()) {
+                                invalidGames.increment();
+                            }
+                            sink.accept(game, result);
+                        } catch (Throwable e) {
+                            failure.compareAndSet(null, e);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            try {
+                for (PgnReader.Game game = reader.next(); game != null && failure.get() == null;
+                     game = reader.next()) {
+                    //wait in short steps so a failure stops the reading even if every worker is gone
+                    while (!queue.offer(game, 10, TimeUnit.MILLISECONDS)) {
+                        if (failure.get() != null) {
+                            break;
+                        }
+                    }
+                }
+            } finally {
+                if (failure.get() != null) {
+                    //nothing queued will be replayed, and clearing leaves room for the end markers
+                    queue.clear();
+                }
+                for (int i = 0; i < threads; i++) {
+                    queue.put(END_OF_GAMES);
+                }
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        Throwable thrown = failure.get();
+        if (thrown instanceof RuntimeException e) {
+            throw e;
+        } else if (thrown instanceof Error e) {
+            throw e;
+        } else if (thrown != null) {
+            throw new RuntimeException(thrown);
+        }
+        return new Summary(games.sum(), invalidGames.sum(), moves.sum(), System.nanoTime() - start);
+    }
+
+    /**
+     * Replays one game read from PGN on the calling thread, from its "FEN" tag or the starting position.
+     * Replay stops at the first move that isn't legal SAN for its position.
+     */
+    public static Result replay(PgnReader.Game pgn) {
+        ChessGame game = WORKER_GAME.get();
+        try {
+            Fen.load(pgn.tags().getOrDefault("FEN", Fen.START), game);
+        } catch (IllegalArgumentException e) {
+            //a game that can't be set up can't have a legal first move
+            Fen.load(Fen.START, game);
+            return new Result(0, 0, Outcome.IN_PROGRESS, game.key());
+        }
+        List<String> moves = pgn.moves();
+        for (int ply = 0; ply < moves.size(); ply++) {
+            int move = San.parse(game, moves.get(ply));
+            if (move < 0) {
+                return new Result(ply, ply, outcome(game), game.key());
+            }
+            game.doMove(move);
+        }
+        return new Result(moves.size(), -1, outcome(game), game.key());
+    }
+
+    private static Outcome outcome(ChessGame game) {
+        //the replay played doMove on the live board, so ask it rather than the last published snapshot
+        ChessGame.TeamColor toMove = game.getTeamTurn();
+        if (!game.hasMove(toMove)) {
+            return game.inCheck(toMove) ? Outcome.CHECKMATE : Outcome.STALEMATE;
+        }
+        if (game.isRepetition(2)) {
+            return Outcome.THREEFOLD_REPETITION;
+        }
+        return game.isFiftyMoveDraw() ? Outcome.FIFTY_MOVE_RULE : Outcome.IN_PROGRESS;
+    }
+}
@@ -1,5 +1,7 @@
 package chess;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import java.util.Arrays;
 
 /**
@@ -8,11 +10,86 @@ import java.util.Arrays;
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
  */
+@JsonAdapter(ChessJson.BoardAdapter.class)
 public class ChessBoard {
 
-    private ChessPiece [][] board;
+    // One occupancy mask per color and piece type, indexed by pieceIndex(color, type).
+    // Bit 0 is row 1 column 1 (a1), bit 7 is row 1 column 8 (h1) and bit 63 is row 8 column 8 (h8).
+    private long[] pieces;
+    // Aggregate masks kept in step with pieces so move generation never has to OR them together
+    private long[] colors;
+    private long occupied;
+    // Zobrist key of the pieces on the board, kept up to date by every change to the masks
+    private long zobristKey;
+
+    // The shared piece instance for each mask index, so getPiece never has to build one
+    private static final ChessPiece[] PIECES = new ChessPiece[12];
+
+    static {
+        for (ChessGame.TeamColor color : ChessGame.TeamColor.values()) {
+            for (ChessPiece.PieceType type : ChessPiece.PieceType.values()) {
+                PIECES[pieceIndex(color, type)] = ChessPiece.of(color, type);
+            }
+        }
+    }
+
     public ChessBoard() {
-        board = new ChessPiece[8][8];
+        pieces = new long[12];
+        colors = new long[2];
+        occupied = 0L;
+        zobristKey = 0L;
+    }
+
+    /**
+     * Creates a board with the same pieces as another board
+     *
+     * @param other the board to copy
+     */
+    public ChessBoard(ChessBoard other) {
+        pieces = other.pieces.clone();
+        colors = other.colors.clone();
+        occupied = other.occupied;
+        zobristKey = other.zobristKey;
+    }
+
+    /**
+     * Replaces this board's pieces with those of another board, in place
+     */
+    void copyFrom(ChessBoard other) {
+        System.arraycopy(other.pieces, 0, pieces, 0, pieces.length);
+        System.arraycopy(other.colors, 0, colors, 0, colors.length);
+        occupied = other.occupied;
+        zobristKey = other.zobristKey;
+    }
+
+    /**
+     * Builds a board from a copy of piece masks taken with copyMasks
+     */
+    static ChessBoard fromMasks(long[] masks) {
+        ChessBoard board = new ChessBoard();
+        board.setMasks(masks);
+        return board;
+    }
+
+    /**
+     * Refills this board in place from piece masks taken with copyMasks
+     */
+    void setMasks(long[] masks) {
+        clear();
+        for (int index = 0; index < masks.length; index++) {
+            long mask = masks[index];
+            while (mask != 0) {
+                placePiece(Long.numberOfTrailingZeros(mask), index);
+                mask &= mask - 1;
+            }
+        }
+    }
+
+    /**
+     * @return a copy of the twelve piece masks, indexed by pieceIndex
+     */
+    long[] copyMasks() {
+        return pieces.clone();
     }
 
     /**
@@ -23,7 +100,11 @@ public class ChessBoard {
      */
     public void addPiece(ChessPosition position, ChessPiece piece)
     {
-        board[position.getRow()-1][position.getColumn()-1] = piece;
+        int square = square(position);
+        removePiece(square);
+        if (piece != null) {
+            placePiece(square, pieceIndex(piece.getTeamColor(), piece.getPieceType()));
+        }
     }
 
     /**
@@ -34,9 +115,8 @@ public class ChessBoard {
      * position
      */
     public ChessPiece getPiece(ChessPosition position) {
-        //modifiers are to account for zero indexing and counting row upwards instead of downwards
-        return board[position.getRow()-1][position.getColumn()-1];
-
+        int index = pieceIndexAt(square(position));
+        return index < 0 ? null : PIECES[index];
     }
 
     /**
@@ -44,13 +124,22 @@ public class ChessBoard {
      * (How the game of chess normally starts)
      */
     public void resetBoard() {
-        board = new ChessPiece[8][8];
+        clear();
         addPawns();
         addBackRank(ChessGame.TeamColor.WHITE);
         addBackRank(ChessGame.TeamColor.BLACK);
 
 
     }
+
+    // Takes every piece off the board
+    void clear() {
+        Arrays.fill(pieces, 0L);
+        Arrays.fill(colors, 0L);
+        occupied = 0L;
+        zobristKey = 0L;
+    }
+
     // A helper function for resetBoard, this adds the back rank of a particular color to the board.
     private void addBackRank(ChessGame.TeamColor color){
         int row;
@@ -58,29 +147,180 @@ public class ChessBoard {
         else{row = 8;}
 
         //Adds Rooks
-        addPiece(new ChessPosition(row,1),new ChessPiece(color, ChessPiece.PieceType.ROOK));
-        addPiece(new ChessPosition(row,8),new ChessPiece(color, ChessPiece.PieceType.ROOK));
+        addPiece(ChessPosition.of(row,1),ChessPiece.of(color, ChessPiece.PieceType.ROOK));
+        addPiece(ChessPosition.of(row,8),ChessPiece.of(color, ChessPiece.PieceType.ROOK));
 
         //Adds knights
-        addPiece(new ChessPosition(row,2),new ChessPiece(color, ChessPiece.PieceType.KNIGHT));
-        addPiece(new ChessPosition(row,7),new ChessPiece(color, ChessPiece.PieceType.KNIGHT));
+        addPiece(ChessPosition.of(row,2),ChessPiece.of(color, ChessPiece.PieceType.KNIGHT));
+        addPiece(ChessPosition.of(row,7),ChessPiece.of(color, ChessPiece.PieceType.KNIGHT));
 
         //Adds bishops
-        addPiece(new ChessPosition(row,3),new ChessPiece(color, ChessPiece.PieceType.BISHOP));
-        addPiece(new ChessPosition(row,6),new ChessPiece(color, ChessPiece.PieceType.BISHOP));
+        addPiece(ChessPosition.of(row,3),ChessPiece.of(color, ChessPiece.PieceType.BISHOP));
+        addPiece(ChessPosition.of(row,6),ChessPiece.of(color, ChessPiece.PieceType.BISHOP));
 
         //adds Royalty
-        addPiece(new ChessPosition(row,4),new ChessPiece(color, ChessPiece.PieceType.QUEEN));
-        addPiece(new ChessPosition(row,5),new ChessPiece(color, ChessPiece.PieceType.KING));
+        addPiece(ChessPosition.of(row,4),ChessPiece.of(color, ChessPiece.PieceType.QUEEN));
+        addPiece(ChessPosition.of(row,5),ChessPiece.of(color, ChessPiece.PieceType.KING));
 
     }
 
     // Another helper function for resetBoard that adds all pawns of both colors to the board.
     private void addPawns(){
         for(int col=1; col<9; col++) {
-            addPiece(new ChessPosition(2, col), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
-            addPiece(new ChessPosition(7, col), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
+            addPiece(ChessPosition.of(2, col), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
+            addPiece(ChessPosition.of(7, col), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
+        }
+    }
+
+    /**
+     * @return the square index (0-63) of a position, counting a1 as 0 and h8 as 63
+     */
+    static int square(ChessPosition position) {
+        return (position.getRow() - 1) * 8 + (position.getColumn() - 1);
+    }
+
+    /**
+     * @return the index (0-11) of the occupancy mask that holds pieces of this color and type
+     */
+    static int pieceIndex(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return color.ordinal() * 6 + type.ordinal();
+    }
+
+    /**
+     * @return the shared piece instance for a mask index returned by pieceIndex
+     */
+    static ChessPiece pieceFor(int index) {
+        return PIECES[index];
+    }
+
+    /**
+     * @return the mask index of the piece on a square, or -1 if the square is empty
+     */
+    int pieceIndexAt(int square) {
+        long bit = 1L << square;
+        if ((occupied & bit) == 0) {
+            return -1;
+        }
+        int first = (colors[0] & bit) != 0 ? 0 : 6;
+        for (int index = first; index < first + 6; index++) {
+            if ((pieces[index] & bit) != 0) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    // Puts the piece with the given mask index onto an empty square
+    void placePiece(int square, int index) {
+        long bit = 1L << square;
+        pieces[index] |= bit;
+        colors[index / 6] |= bit;
+        occupied |= bit;
+        zobristKey ^= Zobrist.piece(index, square);
+    }
+
+    // Clears a square, returning the mask index of whatever was on it or -1 if it was already empty
+    int removePiece(int square) {
+        int index = pieceIndexAt(square);
+        if (index >= 0) {
+            long bit = ~(1L << square);
+            pieces[index] &= bit;
+            colors[index / 6] &= bit;
+            occupied &= bit;
+            zobristKey ^= Zobrist.piece(index, square);
         }
+        return index;
+    }
+
+    // Clears a square the caller already knows holds the piece with the given mask index
+    void removePiece(int square, int index) {
+        long bit = ~(1L << square);
+        pieces[index] &= bit;
+        colors[index / 6] &= bit;
+        occupied &= bit;
+        zobristKey ^= Zobrist.piece(index, square);
+    }
+
+    /**
+     * @return the square index of the given team's king, or -1 if that team has no king on the board
+     */
+    int kingSquare(ChessGame.TeamColor color) {
+        long king = pieces[pieceIndex(color, ChessPiece.PieceType.KING)];
+        return king == 0 ? -1 : Long.numberOfTrailingZeros(king);
+    }
+
+    /**
+     * Checks whether any piece of the attacking team could capture on a square. Rather than generating the
+     * attacker's moves, this looks outward from the square: a knight jump, king step or pawn capture from the
+     * square that lands on a matching enemy piece, or a rook or bishop ray that runs into an enemy slider.
+     *
+     * @param square    square index to test
+     * @param attackers the team doing the attacking
+     * @return True if the square is attacked by at least one piece of the attacking team
+     */
+    boolean isSquareAttacked(int square, ChessGame.TeamColor attackers) {
+        int base = attackers.ordinal() * 6;
+        if ((AttackTables.knightAttacks(square) & pieces[base + ChessPiece.PieceType.KNIGHT.ordinal()]) != 0) {
+            return true;
+        }
+        if ((AttackTables.kingAttacks(square) & pieces[base + ChessPiece.PieceType.KING.ordinal()]) != 0) {
+            return true;
+        }
+        //an enemy pawn attacks this square exactly when one of our pawns here would attack the enemy pawn
+        if ((AttackTables.pawnAttacks(attackers.opponent(), square)
+                & pieces[base + ChessPiece.PieceType.PAWN.ordinal()]) != 0) {
+            return true;
+        }
+        long queens = pieces[base + ChessPiece.PieceType.QUEEN.ordinal()];
+        long straight = pieces[base + ChessPiece.PieceType.ROOK.ordinal()] | queens;
+        if (straight != 0 && (AttackTables.rookAttacks(square, occupied) & straight) != 0) {
+            return true;
+        }
+        long diagonal = pieces[base + ChessPiece.PieceType.BISHOP.ordinal()] | queens;
+        return diagonal != 0 && (AttackTables.bishopAttacks(square, occupied) & diagonal) != 0;
+    }
+
+    /**
+     * Gets the Zobrist key of the pieces on this board. Equal boards always have equal keys, and the key is
+     * updated as pieces are added and removed, so reading it costs nothing no matter how big the board is.
+     *
+     * @return a 64-bit hash of the piece placement
+     */
+    public long getZobristKey() {
+        return zobristKey;
+    }
+
+    /**
+     * Finds every piece of the attacking team that attacks a square, pretending the board's occupancy is the
+     * given mask. Passing the occupancy without the defending king lets a king check whether stepping back
+     * along a slider's ray is really safe.
+     *
+     * @return a mask of the attacking pieces
+     */
+    long attackersOf(int square, ChessGame.TeamColor attackers, long occupancy) {
+        int base = attackers.ordinal() * 6;
+        long queens = pieces[base + ChessPiece.PieceType.QUEEN.ordinal()];
+        return (AttackTables.knightAttacks(square) & pieces[base + ChessPiece.PieceType.KNIGHT.ordinal()])
+                | (AttackTables.kingAttacks(square) & pieces[base + ChessPiece.PieceType.KING.ordinal()])
+                | (AttackTables.pawnAttacks(attackers.opponent(), square) & pieces[base + ChessPiece.PieceType.PAWN.ordinal()])
+                | (AttackTables.rookAttacks(square, occupancy) & (pieces[base + ChessPiece.PieceType.ROOK.ordinal()] | queens))
+                | (AttackTables.bishopAttacks(square, occupancy) & (pieces[base + ChessPiece.PieceType.BISHOP.ordinal()] | queens));
+    }
+
+    long pieces(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return pieces[pieceIndex(color, type)];
+    }
+
+    long pieces(int index) {
+        return pieces[index];
+    }
+
+    long colorMask(ChessGame.TeamColor color) {
+        return colors[color.ordinal()];
+    }
+
+    long occupied() {
+        return occupied;
     }
 
     @Override
@@ -92,18 +332,26 @@ public class ChessBoard {
             return false;
         }
         ChessBoard that = (ChessBoard) o;
-        return Arrays.deepEquals(board, that.board);
+        //different keys always mean different boards, so most mismatches never reach the mask comparison
+        return zobristKey == that.zobristKey && Arrays.equals(pieces, that.pieces);
     }
 
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(board);
+        return Long.hashCode(zobristKey);
     }
 
     @Override
     public String toString() {
-        return "ChessBoard{" +
-                "board=" + Arrays.deepToString(board) +
-                '}';
+        StringBuilder text = new StringBuilder("ChessBoard{\n");
+        for (int row = 8; row >= 1; row--) {
+            text.append('|');
+            for (int col = 1; col <= 8; col++) {
+                int index = pieceIndexAt((row - 1) * 8 + (col - 1));
+                text.append(index < 0 ? ' ' : "KQBNRPkqbnrp".charAt(index)).append('|');
+            }
+            text.append('\n');
+        }
+        return text.append('}').toString();
     }
 }
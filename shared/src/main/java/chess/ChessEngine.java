@@ -0,0 +1,575 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A computer opponent: picks a move with an iterative-deepening alpha-beta search, optionally on several threads
+ * sharing one transposition table. Keep one engine per game; apart from stop(), use it from one thread at a time.
+ */
+public class ChessEngine {
+
+    /**
+     * How much to search for one move. Searching stops at whichever limit is reached first.
+     *
+     * @param maxDepth  the deepest iteration to run, in plies
+     * @param maxNodes  how many positions to visit at most
+     * @param maxMillis how long to search at most, in milliseconds
+     * @param threads   how many threads to search with, counting the calling thread; more than there are
+     *                  cores are not used. The node limit applies to the calling thread only.
+     */
+    public record Limits(int maxDepth, long maxNodes, long maxMillis, int threads) {
+
+        public Limits {
+            if (threads < 1) {
+                throw new IllegalArgumentException("A search needs at least one thread, got " + threads);
+            }
+        }
+
+        public static Limits depth(int maxDepth) {
+            return new Limits(maxDepth, Long.MAX_VALUE, Long.MAX_VALUE, 1);
+        }
+
+        public static Limits nodes(long maxNodes) {
+            return new Limits(MAX_PLY, maxNodes, Long.MAX_VALUE, 1);
+        }
+
+        public static Limits millis(long maxMillis) {
+            return new Limits(MAX_PLY, Long.MAX_VALUE, maxMillis, 1);
+        }
+
+        /**
+         * @return the same limits searched with a different number of threads
+         */
+        public Limits withThreads(int threads) {
+            return new Limits(maxDepth, maxNodes, maxMillis, threads);
+        }
+    }
+
+    /**
+     * The outcome of a search
+     *
+     * @param bestMove the move to play, or null if the side to move has no legal move
+     * @param score    centipawns for the side to move; a forced mate scores close to {@link #MATE} or -MATE
+     * @param depth    the deepest iteration that finished
+     * @param nodes    how many positions were visited, by all threads together
+     * @param nanos    how long the search took
+     */
+    public record Result(ChessMove bestMove, int score, int depth, long nodes, long nanos) {
+    }
+
+    /**
+     * The score of being checkmated right now; a mate n plies away scores MATE - n
+     */
+    public static final int MATE = 30000;
+
+    static final int MAX_PLY = 100;
+    static final int NO_MOVE = 0;
+    private static final int INFINITY = MATE + 1;
+    // Scores beyond this are mates, which are stored in the table relative to the position they occur in
+    private static final int MATE_BOUND = MATE - MAX_PLY;
+    private static final int DEFAULT_TABLE_MB = 16;
+
+    // Move ordering scores: the previous best move first, then captures, then promotions, killers and history
+    private static final int BEST_MOVE_ORDER = 1 << 30;
+    private static final int CAPTURE_ORDER = 1 << 29;
+    private static final int PROMOTION_ORDER = 1 << 28;
+    private static final int KILLER_ORDER = 1 << 27;
+    private static final int HISTORY_LIMIT = 1 << 26;
+
+    // How often (in nodes) to look at the clock
+    private static final int TIME_CHECK_INTERVAL = 1024;
+
+    // A search never uses more threads than there are cores, counting the calling thread
+    private static final int MAX_THREADS = Runtime.getRuntime().availableProcessors();
+
+    // Shared by every engine, with a thread for each core but the caller's; the threads are daemons so an idle
+    // pool never keeps the server from exiting
+    private static final ExecutorService HELPER_POOL = Executors.newFixedThreadPool(Math.max(1, MAX_THREADS - 1),
+            task -> {
+                Thread thread = new Thread(task, "chess-engine-helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final MoveList[] moveLists = new MoveList[MAX_PLY + 1];
+    private final int[][] orderScores = new int[MAX_PLY + 1][];
+    private final int[][] killers = new int[MAX_PLY + 1][2];
+    // Indexed by [color ordinal][from][to]: how often a quiet move has caused a cutoff, weighted by depth
+    private final int[][][] history = new int[2][64][64];
+    private final TranspositionTable table;
+    // The bitbases to probe, or null
+    private final EndgameBitbases bitbases;
+    // Engines for the helper threads, created the first time a search asks for that many threads
+    private final List<ChessEngine> helpers = new ArrayList<>();
+
+    private ChessGame game;
+    private ChessBoard board;
+    private long nodes;
+    private long maxNodes;
+    private long deadline;
+    private boolean stopped;
+    // Set from another thread to end the search early
+    private volatile boolean stopRequested;
+    // For a helper, set by whichever comes first: its task starting, or the search ending before it got a thread
+    private final AtomicBoolean claimed = new AtomicBoolean();
+    private int rootBestMove;
+    private int rootBestScore;
+    // The best move and score of the deepest finished iteration
+    private int bestMove;
+    private int bestScore;
+    private int completedDepth;
+
+    /**
+     * Creates an engine with its own transposition table of the default size, using the process-wide
+     * endgame bitbases; the first engine waits for them to be solved.
+     */
+    public ChessEngine() {
+        this(new TranspositionTable(DEFAULT_TABLE_MB));
+    }
+
+    /**
+     * @param table the transposition table to use; several engines can share one. The process-wide endgame
+     *              bitbases are used, as with {@link #ChessEngine()}.
+     */
+    public ChessEngine(TranspositionTable table) {
+        this(table, EndgameBitbases.shared());
+    }
+
+    /**
+     * @param table    the transposition table to use; several engines can share one
+     * @param bitbases the endgame bitbases to probe, or null to search those endings like any other position
+     */
+    public ChessEngine(TranspositionTable table, EndgameBitbases bitbases) {
+        this.table = table;
+        this.bitbases = bitbases;
+        for (int ply = 0; ply <= MAX_PLY; ply++) {
+            moveLists[ply] = new MoveList();
+            orderScores[ply] = new int[256];
+        }
+    }
+
+    /**
+     * Searches for the best move for the team whose turn it is
+     *
+     * @param position the game to pick a move in; it is not changed
+     * @param limits   how much to search
+     * @return the chosen move along with some statistics about the search
+     */
+    public Result search(ChessGame position, Limits limits) {
+        long start = System.nanoTime();
+        stopRequested = false;
+        prepare(position, limits, start);
+        table.newSearch();
+        if (moveLists[0].isEmpty()) {
+            return new Result(null, inCheck() ? -MATE : 0, 0, 0, System.nanoTime() - start);
+        }
+
+        int maxDepth = Math.min(limits.maxDepth(), MAX_PLY - 1);
+        List<Future<?>> running = startHelpers(position, maxDepth, Math.min(limits.threads(), MAX_THREADS) - 1);
+        long totalNodes;
+        try {
+            iterate(1, maxDepth);
+        } finally {
+            totalNodes = nodes + stopHelpers(running);
+        }
+        return new Result(Move.toChessMove(bestMove), bestScore, completedDepth, totalNodes, System.nanoTime() - start);
+    }
+
+    /**
+     * Asks a running search to finish as soon as possible; it still returns the best move found so far.
+     * Unlike everything else here this may be called from any thread.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    // Resets the per-search state and generates the root moves
+    private void prepare(ChessGame position, Limits limits, long start) {
+        game = new ChessGame(position);
+        board = game.getBoard();
+        nodes = 0;
+        maxNodes = limits.maxNodes();
+        deadline = limits.maxMillis() == Long.MAX_VALUE ? Long.MAX_VALUE : start + limits.maxMillis() * 1_000_000;
+        stopped = false;
+        clearHeuristics();
+        game.generateLegalMoves(game.getTeamTurn(), moveLists[0]);
+        //if not even one iteration finishes, any legal move is better than none
+        bestMove = moveLists[0].isEmpty() ? NO_MOVE : moveLists[0].get(0);
+        bestScore = 0;
+        completedDepth = 0;
+    }
+
+    // Iterative deepening from startDepth until maxDepth or the budget runs out
+    private void iterate(int startDepth, int maxDepth) {
+        for (int depth = startDepth; depth <= maxDepth; depth++) {
+            rootBestMove = NO_MOVE;
+            searchRoot(depth, bestMove);
+            if (stopped) {
+                break;
+            }
+            bestMove = rootBestMove;
+            bestScore = rootBestScore;
+            completedDepth = depth;
+            //a forced mate won't get any better with more depth
+            if (Math.abs(bestScore) > MATE_BOUND) {
+                break;
+            }
+        }
+    }
+
+    // Starts helper searches of the same position; every other helper starts a ply deeper so they spread out
+    private List<Future<?>> startHelpers(ChessGame position, int maxDepth, int count) {
+        List<Future<?>> running = new ArrayList<>(count);
+        while (helpers.size() < count) {
+            helpers.add(new ChessEngine(table, bitbases));
+        }
+        for (int i = 0; i < count; i++) {
+            ChessEngine helper = helpers.get(i);
+            ChessGame copy = new ChessGame(position);
+            int startDepth = Math.min(1 + (i + 1) % 2, maxDepth);
+            //cleared here rather than in the helper, so a stop that arrives before the helper starts isn't lost
+            helper.stopRequested = false;
+            helper.claimed.set(false);
+            running.add(HELPER_POOL.submit(() -> {
+                //other searches may have every pool thread busy, in which case this one has already finished
+                if (helper.claimed.compareAndSet(false, true)) {
+                    helper.prepare(copy, Limits.depth(maxDepth), System.nanoTime());
+                    helper.iterate(startDepth, maxDepth);
+                }
+            }));
+        }
+        return running;
+    }
+
+    // Stops the helpers, waits for them to finish and returns how many nodes they searched
+    private long stopHelpers(List<Future<?>> running) {
+        long helperNodes = 0;
+        for (int i = 0; i < running.size(); i++) {
+            helpers.get(i).stop();
+        }
+        for (int i = 0; i < running.size(); i++) {
+            if (helpers.get(i).claimed.compareAndSet(false, true)) {
+                //never started, so there is nothing to wait for
+                continue;
+            }
+            try {
+                running.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+            helperNodes += helpers.get(i).nodes;
+        }
+        return helperNodes;
+    }
+
+    private void searchRoot(int depth, int previousBest) {
+        MoveList moves = moveLists[0];
+        scoreMoves(0, moves, previousBest);
+        int alpha = -INFINITY;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = pickNext(0, moves, i);
+            game.doMove(move);
+            int score = -negamax(depth - 1, -INFINITY, -alpha, 1);
+            game.undoMove();
+            if (stopped) {
+                return;
+            }
+            if (score > alpha) {
+                alpha = score;
+                rootBestMove = move;
+                rootBestScore = score;
+            }
+        }
+        table.store(game.key(), depth, TranspositionTable.EXACT, toTable(alpha, 0), rootBestMove);
+    }
+
+    /**
+     * @return the transposition table this engine searches with
+     */
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    private int negamax(int depth, int alpha, int beta, int ply) {
+        boolean inCheck = inCheck();
+        //don't stop searching in check: the position is too unsettled to judge
+        if (inCheck) {
+            depth++;
+        }
+        if (depth <= 0) {
+            return quiescence(alpha, beta, ply);
+        }
+        if (countNode()) {
+            return 0;
+        }
+        if (ply >= MAX_PLY) {
+            return evaluate();
+        }
+        //a position seen once before can be repeated again, so treat it as the draw it can be forced into
+        if (game.isRepetition(1) || game.isFiftyMoveDraw()) {
+            return 0;
+        }
+        if (bitbases != null && Long.bitCount(board.occupied()) == 3) {
+            //a draw is exact. A win is worth at least a known win and a loss at most a known loss (the real
+            //score is a mate), so those end the search only when that bound already settles the window.
+            ChessGame.TeamColor color = game.getTeamTurn();
+            int outcome = bitbases.probe(board, color);
+            if (outcome == EndgameBitbases.DRAW) {
+                return 0;
+            } else if (outcome == EndgameBitbases.WIN) {
+                int score = Evaluator.knownWin(board, color);
+                if (score >= beta) {
+                    return score;
+                }
+            } else if (outcome == EndgameBitbases.LOSS) {
+                int score = -Evaluator.knownWin(board, color.opponent());
+                if (score <= alpha) {
+                    return score;
+                }
+            }
+        }
+
+        long key = game.key();
+        long entry = table.probe(key);
+        if (entry != 0 && TranspositionTable.depth(entry) >= depth) {
+            int score = fromTable(TranspositionTable.score(entry), ply);
+            int bound = TranspositionTable.bound(entry);
+            if (bound == TranspositionTable.EXACT
+                    || (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+                    || (bound == TranspositionTable.UPPER_BOUND && score <= alpha)) {
+                return score;
+            }
+        }
+
+        MoveList moves = moveLists[ply];
+        game.generateLegalMoves(game.getTeamTurn(), moves);
+        if (moves.isEmpty()) {
+            //checkmate, preferring the quickest mate; otherwise stalemate is a draw
+            return inCheck ? -MATE + ply : 0;
+        }
+
+        scoreMoves(ply, moves, TranspositionTable.move(entry));
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = NO_MOVE;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = pickNext(ply, moves, i);
+            game.doMove(move);
+            int score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+            game.undoMove();
+            if (stopped) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        if (isQuiet(move)) {
+                            rememberCutoff(move, depth, ply);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+        int bound = best >= beta ? TranspositionTable.LOWER_BOUND
+                : best > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER_BOUND;
+        table.store(key, depth, bound, toTable(best, ply), bestMove);
+        return best;
+    }
+
+    // Searches only captures and promotions (or every move when in check) until the position is quiet
+    private int quiescence(int alpha, int beta, int ply) {
+        if (countNode()) {
+            return 0;
+        }
+        if (ply >= MAX_PLY) {
+            return evaluate();
+        }
+        boolean inCheck = inCheck();
+        int best = -INFINITY;
+        if (!inCheck) {
+            //standing pat: the side to move doesn't have to capture, so the static score is a lower bound
+            best = evaluate();
+            if (best >= beta) {
+                return best;
+            }
+            alpha = Math.max(alpha, best);
+        }
+
+        MoveList moves = moveLists[ply];
+        game.generateLegalMoves(game.getTeamTurn(), moves);
+        if (inCheck && moves.isEmpty()) {
+            return -MATE + ply;
+        }
+        if (!inCheck) {
+            int kept = 0;
+            for (int i = 0; i < moves.size(); i++) {
+                if (!isQuiet(moves.get(i))) {
+                    moves.set(kept++, moves.get(i));
+                }
+            }
+            moves.truncate(kept);
+        }
+
+        scoreMoves(ply, moves, NO_MOVE);
+        for (int i = 0; i < moves.size(); i++) {
+            int move = pickNext(ply, moves, i);
+            game.doMove(move);
+            int score = -quiescence(-beta, -alpha, ply + 1);
+            game.undoMove();
+            if (stopped) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    // The static score for the side to move, exact in the endings the bitbases cover
+    private int evaluate() {
+        ChessGame.TeamColor color = game.getTeamTurn();
+        if (bitbases != null && Long.bitCount(board.occupied()) == 3) {
+            int outcome = bitbases.probe(board, color);
+            if (outcome == EndgameBitbases.DRAW) {
+                return 0;
+            } else if (outcome == EndgameBitbases.WIN) {
+                return Evaluator.knownWin(board, color);
+            } else if (outcome == EndgameBitbases.LOSS) {
+                return -Evaluator.knownWin(board, color.opponent());
+            }
+        }
+        return Evaluator.evaluate(board, color);
+    }
+
+    // Mate scores count plies from the root; the table stores them counted from the position itself
+    private static int toTable(int score, int ply) {
+        return score > MATE_BOUND ? score + ply : score < -MATE_BOUND ? score - ply : score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        return score > MATE_BOUND ? score - ply : score < -MATE_BOUND ? score + ply : score;
+    }
+
+    // Counts a visited position and checks the budget; returns True once the search has to stop
+    private boolean countNode() {
+        if (stopped) {
+            return true;
+        }
+        nodes++;
+        if (stopRequested || nodes >= maxNodes
+                || (nodes % TIME_CHECK_INTERVAL == 0 && deadline != Long.MAX_VALUE && System.nanoTime() >= deadline)) {
+            stopped = true;
+        }
+        return stopped;
+    }
+
+    private boolean inCheck() {
+        ChessGame.TeamColor color = game.getTeamTurn();
+        int king = board.kingSquare(color);
+        return king >= 0 && board.isSquareAttacked(king, color.opponent());
+    }
+
+    private static boolean isQuiet(int move) {
+        return !Move.isCapture(move) && Move.promotion(move) == null;
+    }
+
+    // Gives every move a sort key so the likeliest best moves are searched first
+    private void scoreMoves(int ply, MoveList moves, int bestMove) {
+        int[] scores = orderScores[ply];
+        int color = game.getTeamTurn().ordinal();
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int score;
+            if (bestMove != NO_MOVE && Move.sameMove(move, bestMove)) {
+                score = BEST_MOVE_ORDER;
+            } else if (Move.isCapture(move)) {
+                //most valuable victim first, and among those the least valuable attacker first
+                int victim = (move & Move.EN_PASSANT) != 0 ? ChessPiece.PieceType.PAWN.ordinal()
+                        : board.pieceIndexAt(Move.to(move)) % 6;
+                int attacker = board.pieceIndexAt(Move.from(move)) % 6;
+                score = CAPTURE_ORDER + Evaluator.PIECE_VALUES[victim] * 16 - Evaluator.PIECE_VALUES[attacker] / 16;
+            } else if (Move.promotion(move) != null) {
+                score = PROMOTION_ORDER + Evaluator.PIECE_VALUES[Move.promotion(move).ordinal()];
+            } else if (move == killers[ply][0]) {
+                score = KILLER_ORDER + 1;
+            } else if (move == killers[ply][1]) {
+                score = KILLER_ORDER;
+            } else {
+                score = history[color][Move.from(move)][Move.to(move)];
+            }
+            scores[i] = score;
+        }
+    }
+
+    // Selection sort, one step at a time: after a cutoff the rest of the list never needs sorting
+    private int pickNext(int ply, MoveList moves, int index) {
+        int[] scores = orderScores[ply];
+        int best = index;
+        for (int i = index + 1; i < moves.size(); i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        int move = moves.get(best);
+        if (best != index) {
+            moves.set(best, moves.get(index));
+            moves.set(index, move);
+            int score = scores[best];
+            scores[best] = scores[index];
+            scores[index] = score;
+        }
+        return move;
+    }
+
+    // A quiet move that refuted the opponent's move is likely to refute its siblings too
+    private void rememberCutoff(int move, int depth, int ply) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        int[] fromHistory = history[game.getTeamTurn().ordinal()][Move.from(move)];
+        fromHistory[Move.to(move)] += depth * depth;
+        //keep history below the killer scores by halving the whole table when an entry gets too big
+        if (fromHistory[Move.to(move)] >= HISTORY_LIMIT) {
+            for (int[][] colorHistory : history) {
+                for (int[] row : colorHistory) {
+                    for (int to = 0; to < 64; to++) {
+                        row[to] /= 2;
+                    }
+                }
+            }
+        }
+    }
+
+    private void clearHeuristics() {
+        for (int[] plyKillers : killers) {
+            plyKillers[0] = NO_MOVE;
+            plyKillers[1] = NO_MOVE;
+        }
+        for (int[][] colorHistory : history) {
+            for (int[] row : colorHistory) {
+                Arrays.fill(row, 0);
+            }
+        }
+    }
+}
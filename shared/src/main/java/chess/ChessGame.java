@@ -1,29 +1,189 @@
 package chess;
 
-import java.util.ArrayList;
+import com.google.gson.annotations.JsonAdapter;
+
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Objects;
+import java.util.concurrent.locks.StampedLock;
 
 /**
- * For a class that can manage a chess game, making moves on a board
+ * For a class that can manage a chess game, making moves on a board.
+ * Changes lock; getters never do, except that getBoard() belongs to one thread.
  * <p>
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
  */
+@JsonAdapter(ChessJson.GameAdapter.class)
 public class ChessGame {
+
+    /**
+     * Castling rights bit: white may still castle on the king's side
+     */
+    public static final int WHITE_KINGSIDE = 1;
+    /**
+     * Castling rights bit: white may still castle on the queen's side
+     */
+    public static final int WHITE_QUEENSIDE = 1 << 1;
+    /**
+     * Castling rights bit: black may still castle on the king's side
+     */
+    public static final int BLACK_KINGSIDE = 1 << 2;
+    /**
+     * Castling rights bit: black may still castle on the queen's side
+     */
+    public static final int BLACK_QUEENSIDE = 1 << 3;
+    private static final int ALL_CASTLING = 0xF;
+
+    // For each square, the castling rights that survive a move from or to it: moving a king or a rook off its
+    // starting square, or capturing a rook on it, loses the matching rights for good
+    private static final int[] CASTLING_KEPT = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_KEPT, ALL_CASTLING);
+        CASTLING_KEPT[0] = ~WHITE_QUEENSIDE & ALL_CASTLING;
+        CASTLING_KEPT[4] = ~(WHITE_KINGSIDE | WHITE_QUEENSIDE) & ALL_CASTLING;
+        CASTLING_KEPT[7] = ~WHITE_KINGSIDE & ALL_CASTLING;
+        CASTLING_KEPT[56] = ~BLACK_QUEENSIDE & ALL_CASTLING;
+        CASTLING_KEPT[60] = ~(BLACK_KINGSIDE | BLACK_QUEENSIDE) & ALL_CASTLING;
+        CASTLING_KEPT[63] = ~BLACK_KINGSIDE & ALL_CASTLING;
+    }
+
     private TeamColor teamTurn = TeamColor.WHITE;
     private ChessBoard board;
+    private int castlingRights = ALL_CASTLING;
+    // The square a pawn that just moved two squares passed over, or -1
+    private int enPassantSquare = -1;
+    // Plies since the last capture or pawn move
+    private int halfmoveClock;
+    // Starts at 1 and goes up after each black move
+    private int fullmoveNumber = 1;
+
+    // Each undo entry packs one doMove into a long: bits 0-5 from square, 6-11 to square,
+    // 12-15 moved piece, 16-19 captured piece + 1 (0 when nothing was captured),
+    // 20-23 the piece that landed on the to square, which differs from the moved piece after a promotion,
+    // then the state the move replaced: 24-27 castling rights, 28-34 en passant square + 1 and 35-50 the
+    // halfmove clock, and last whether the move castled (bit 51) or captured en passant (bit 52).
+    private static final int UNDO_TO_SHIFT = 6;
+    private static final int UNDO_MOVED_SHIFT = 12;
+    private static final int UNDO_CAPTURED_SHIFT = 16;
+    private static final int UNDO_PLACED_SHIFT = 20;
+    private static final int UNDO_CASTLING_SHIFT = 24;
+    private static final int UNDO_EN_PASSANT_SHIFT = 28;
+    private static final int UNDO_CLOCK_SHIFT = 35;
+    private static final long UNDO_CASTLED = 1L << 51;
+    private static final long UNDO_TOOK_EN_PASSANT = 1L << 52;
+    // Deep enough for any legality test plus a long game; it only grows past this for very long games
+    private static final int UNDO_CAPACITY = 256;
+
+    private transient long[] undoStack = new long[UNDO_CAPACITY];
+    private transient int undoSize;
+    // keyHistory[i] is the Zobrist key of the position before undo entry i was played
+    private transient long[] keyHistory = new long[UNDO_CAPACITY];
+    // Reused by the live move lookups so they don't allocate a new buffer each time
+    private transient MoveList scratchMoves = new MoveList();
+
+    // Status of the live position for makeMove and code playing doMove, worked out at most once per position;
+    // the public queries use the snapshot's instead. Each team gets four bits of statusFlags, shifted left by
+    // 4 * its ordinal: whether its check status is known and whether it is in check, then whether its
+    // has-a-legal-move status is known and whether it has one.
+    private static final int CHECK_KNOWN = 1;
+    private static final int IN_CHECK = 1 << 1;
+    private static final int MOVE_KNOWN = 1 << 2;
+    private static final int HAS_MOVE = 1 << 3;
+    // Set once turnMoves holds every legal move of the team to move
+    private static final int TURN_MOVES_KNOWN = 1 << 8;
+
+    // The cache belongs to this board in the position with this key; anything else means it is stale,
+    // which also catches pieces added straight through getBoard()
+    private transient ChessBoard statusBoard;
+    private transient long statusKey;
+    private transient int statusFlags;
+    private transient MoveList turnMoves = new MoveList();
+    // turnMoves is kept sorted by origin square, so the moves of the piece on square s are the ones from index
+    // turnMovesFrom[s] up to turnMovesFrom[s + 1]
+    private transient int[] turnMovesFrom = new int[65];
+
+    // Latest published picture of the game for other threads; replaced, never changed, whenever the position is
+    private transient volatile GameSnapshot snapshot;
+
+    // Changes take the write lock and each adds one to version, then publish a snapshot. Getters read the
+    // fields optimistically and use the snapshot when a change was under way; move queries read the snapshot.
+    private final transient StampedLock lock = new StampedLock();
+    private transient volatile long version;
+
+    /**
+     * How many plies apart the positions kept in the move history are; going to any ply of the history replays
+     * at most this many moves
+     */
+    public static final int CHECKPOINT_INTERVAL = 32;
+    private static final int CHECKPOINT_BYTES = GameCodec.MAX_BYTES;
+
+    // Every move made since the board or the team to move was last set from outside, as Move.withoutFlags
+    // codes (two bytes a move), and positions along the way encoded by GameCodec, one fixed-size slot each,
+    // with the ply each was taken at in checkpointPlies. There is one at ply 0 and then one at most
+    // CHECKPOINT_INTERVAL plies after the last, written when the move from it is made, plus one wherever a
+    // setter changed the rules state partway through the history. currentPly is where in the history the
+    // board is; after going back it is less than historyLength, and the next move made drops the moves after it.
+    private transient char[] historyMoves = new char[CHECKPOINT_INTERVAL];
+    private transient int historyLength;
+    private transient int currentPly;
+    private transient byte[] checkpoints = new byte[CHECKPOINT_BYTES];
+    private transient int[] checkpointPlies = new int[1];
+    private transient int checkpointCount;
 
     public ChessGame() {
         board = new ChessBoard();
         board.resetBoard();
+        snapshot = snapshotOf(null, -1);
+    }
+
+    /**
+     * Creates an independent game in the same position as another game, with its own copy of the board.
+     * The moves played since the other game's board was set come along, so repetitions still count.
+     *
+     * @param other the game to copy
+     */
+    public ChessGame(ChessGame other) {
+        //copy again if a change to the other game was under way, rather than hold up its writers
+        for (long stamp = other.lock.tryOptimisticRead(); ; stamp = other.lock.tryOptimisticRead()) {
+            if (stamp != 0) {
+                board = new ChessBoard(other.board);
+                copyFrom(other);
+                if (other.lock.validate(stamp)) {
+                    break;
+                }
+            }
+            Thread.onSpinWait();
+        }
+        snapshot = snapshotOf(null, -1);
+    }
+
+    // Copies everything but the board
+    private void copyFrom(ChessGame other) {
+        teamTurn = other.teamTurn;
+        castlingRights = other.castlingRights;
+        enPassantSquare = other.enPassantSquare;
+        halfmoveClock = other.halfmoveClock;
+        fullmoveNumber = other.fullmoveNumber;
+        undoStack = Arrays.copyOf(other.undoStack, other.undoStack.length);
+        keyHistory = Arrays.copyOf(other.keyHistory, other.keyHistory.length);
+        undoSize = other.undoSize;
+        historyMoves = Arrays.copyOf(other.historyMoves, other.historyMoves.length);
+        historyLength = other.historyLength;
+        currentPly = other.currentPly;
+        checkpoints = Arrays.copyOf(other.checkpoints, other.checkpoints.length);
+        checkpointPlies = Arrays.copyOf(other.checkpointPlies, other.checkpointPlies.length);
+        checkpointCount = other.checkpointCount;
     }
 
     /**
      * @return Which team's turn it is
      */
     public TeamColor getTeamTurn() {
-        return this.teamTurn;
+        long stamp = lock.tryOptimisticRead();
+        TeamColor team = teamTurn;
+        return lock.validate(stamp) ? team : snapshot.getTeamTurn();
     }
 
     /**
@@ -32,7 +192,176 @@ public class ChessGame {
      * @param team the team whose turn it is
      */
     public void setTeamTurn(TeamColor team) {
-        this.teamTurn = team;
+        long stamp = lock.writeLock();
+        try {
+            this.teamTurn = team;
+            //an en passant capture is only ever open to the team that moves right after the double step
+            enPassantSquare = -1;
+            positionChanged();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return the castling rights still open, a combination of {@link #WHITE_KINGSIDE}, {@link #WHITE_QUEENSIDE},
+     * {@link #BLACK_KINGSIDE} and {@link #BLACK_QUEENSIDE}
+     */
+    public int getCastlingRights() {
+        long stamp = lock.tryOptimisticRead();
+        int rights = castlingRights;
+        return lock.validate(stamp) ? rights : snapshot.getCastlingRights();
+    }
+
+    /**
+     * Sets which castling moves are still allowed. A right only lets a king castle while it and the rook are
+     * on their starting squares.
+     *
+     * @param castlingRights a combination of the castling rights bits
+     */
+    public void setCastlingRights(int castlingRights) {
+        long stamp = lock.writeLock();
+        try {
+            this.castlingRights = castlingRights & ALL_CASTLING;
+            rulesChanged();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return the square a pawn can capture onto en passant this turn, or null
+     */
+    public ChessPosition getEnPassantSquare() {
+        long stamp = lock.tryOptimisticRead();
+        int square = enPassantSquare;
+        if (!lock.validate(stamp)) {
+            return snapshot.getEnPassantSquare();
+        }
+        return square < 0 ? null : ChessPosition.ofSquare(square);
+    }
+
+    /**
+     * Sets the square the team to move could capture onto en passant, as if the enemy pawn in front of it had
+     * just moved two squares
+     *
+     * @param square the square, or null for none
+     * @throws IllegalArgumentException if the square isn't on row 6 with white to move or row 3 with black
+     */
+    public void setEnPassantSquare(ChessPosition square) {
+        long stamp = lock.writeLock();
+        try {
+            //GameCodec only keeps the file, so any other row wouldn't survive encoding
+            int row = teamTurn == TeamColor.WHITE ? 6 : 3;
+            if (square != null && square.getRow() != row) {
+                throw new IllegalArgumentException("With " + teamTurn + " to move the en passant square must be on row "
+                        + row + ", got " + square);
+            }
+            enPassantSquare = square == null ? -1 : ChessBoard.square(square);
+            rulesChanged();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return how many moves (counting each team's move separately) have been played since the last capture
+     * or pawn move
+     */
+    public int getHalfmoveClock() {
+        long stamp = lock.tryOptimisticRead();
+        int clock = halfmoveClock;
+        return lock.validate(stamp) ? clock : snapshot.getHalfmoveClock();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the clock is negative
+     */
+    public void setHalfmoveClock(int halfmoveClock) {
+        if (halfmoveClock < 0) {
+            throw new IllegalArgumentException("The halfmove clock can't be negative, got " + halfmoveClock);
+        }
+        long stamp = lock.writeLock();
+        try {
+            this.halfmoveClock = halfmoveClock;
+            rulesChanged();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return the number of the current full move: 1 until black has made its first move, and one more after
+     * each black move
+     */
+    public int getFullmoveNumber() {
+        long stamp = lock.tryOptimisticRead();
+        int number = fullmoveNumber;
+        return lock.validate(stamp) ? number : snapshot.getFullmoveNumber();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the number is negative
+     */
+    public void setFullmoveNumber(int fullmoveNumber) {
+        if (fullmoveNumber < 0) {
+            throw new IllegalArgumentException("The fullmove number can't be negative, got " + fullmoveNumber);
+        }
+        long stamp = lock.writeLock();
+        try {
+            this.fullmoveNumber = fullmoveNumber;
+            rulesChanged();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Sets up a position a loader has parsed into a board of its own, as one change: the pieces are copied into
+    // the game's board in place and the history is dropped
+    void setPosition(ChessBoard loaded, TeamColor teamTurn, int castlingRights, int enPassantSquare,
+                     int halfmoveClock, int fullmoveNumber) {
+        long stamp = lock.writeLock();
+        try {
+            board.copyFrom(loaded);
+            loadPosition(teamTurn, castlingRights, enPassantSquare, halfmoveClock, fullmoveNumber);
+            invalidateStatus();
+            version++;
+            snapshot = snapshotOf(null, -1);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Takes on the position and history GameCodec decoded into a game of its own, as one change
+    void load(ChessGame loaded) {
+        long stamp = lock.writeLock();
+        try {
+            board.copyFrom(loaded.board);
+            if (loaded.historyLength == 0 && loaded.undoSize == 0) {
+                loadPosition(loaded.teamTurn, loaded.castlingRights, loaded.enPassantSquare, loaded.halfmoveClock,
+                        loaded.fullmoveNumber);
+            } else {
+                copyFrom(loaded);
+            }
+            invalidateStatus();
+            version++;
+            snapshot = snapshotOf(null, -1);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Sets everything but the pieces and drops the history, with no lock, version or snapshot: for a game no
+    // other thread can see yet, or a checkpoint loaded under the write lock
+    void loadPosition(TeamColor teamTurn, int castlingRights, int enPassantSquare, int halfmoveClock,
+                      int fullmoveNumber) {
+        this.teamTurn = teamTurn;
+        this.castlingRights = castlingRights & ALL_CASTLING;
+        this.enPassantSquare = enPassantSquare;
+        this.halfmoveClock = halfmoveClock;
+        this.fullmoveNumber = fullmoveNumber;
+        undoSize = 0;
+        clearHistory();
     }
 
     private void switchTeams(TeamColor currentTurn) {
@@ -48,7 +377,14 @@ public class ChessGame {
      */
     public enum TeamColor {
         WHITE,
-        BLACK
+        BLACK;
+
+        /**
+         * @return the team playing against this one
+         */
+        public TeamColor opponent() {
+            return this == WHITE ? BLACK : WHITE;
+        }
     }
 
     /**
@@ -59,56 +395,256 @@ public class ChessGame {
      * startPosition
      */
     public Collection<ChessMove> validMoves(ChessPosition startPosition) {
-        //account for teamTurn in make move
-        Collection<ChessMove> possibleMoves = board.getPiece(startPosition).pieceMoves(board, startPosition);
-        ChessPiece piece = board.getPiece(startPosition);
-        Collection<ChessMove> validMoves = new ArrayList<>();
+        return current().validMoves(startPosition);
+    }
 
+    public Collection<ChessMove> possibleMoves(TeamColor color) {
+        return current().possibleMoves(color);
+    }
 
-        //implement some more checks to determine if the move is actually valid
+    /**
+     * Fills a list with every legal move for a team in the compact encoding described in {@link Move}.
+     * This is the allocation-free counterpart of validMoves for callers that look at many moves at once.
+     *
+     * @param color which team to generate moves for
+     * @param moves the list to fill; anything already in it is cleared first
+     */
+    public void legalMoves(TeamColor color, MoveList moves) {
+        current().legalMoves(color, moves);
+    }
 
-        for (ChessMove move : possibleMoves) {
-            if (!movePutsInCheck(piece.getTeamColor(), move)) {
-                validMoves.add(move);
-            }
+    // legalMoves on the live board, for the engine and other code playing doMove on a game of its own
+    void generateLegalMoves(TeamColor color, MoveList moves) {
+        moves.clear();
+        MoveGenerator.generateLegalMoves(board, color, castlingRights, color == teamTurn ? enPassantSquare : -1,
+                -1L, moves, false);
+    }
+
+    /**
+     * Checks whether a team has any legal move at all, stopping at the first one found
+     *
+     * @param teamColor which team to check
+     * @return True if the team can make at least one legal move
+     */
+    public boolean hasAnyLegalMove(TeamColor teamColor) {
+        return current().hasMove(teamColor);
+    }
+
+    // Called after the board or the team to move is changed from outside makeMove: the moves made so far no
+    // longer lead to the position, nothing cached about it holds any more, and readers get a fresh snapshot
+    private void positionChanged() {
+        clearHistory();
+        invalidateStatus();
+        version++;
+        snapshot = snapshotOf(null, -1);
+    }
+
+    // Called after the castling rights, en passant square or a move counter is set from outside makeMove. The
+    // moves up to the current ply still lead to the position, so they stay for going back, with a checkpoint
+    // of the position as set so that replaying them comes back to it; moves after the current ply are dropped.
+    private void rulesChanged() {
+        historyLength = currentPly;
+        checkpointCount = checkpointsBefore(currentPly);
+        if (currentPly > 0) {
+            storeCheckpoint();
         }
-        return validMoves;
+        invalidateStatus();
+        version++;
+        snapshot = snapshotOf(null, -1);
     }
 
-    public Collection<ChessMove> possibleMoves(TeamColor color) {
-        Collection<ChessMove> possibleMoves = new ArrayList<>();
-        for (int i = 1; i < 9; i++) {
-            for (int j = 1; j < 9; j++) {
-                ChessPosition boardPosition = new ChessPosition(i, j);
-                //safety check for a piece on the square
-                if (board.getPiece(boardPosition) != null) {
-                    //if the piece is my color, save all their possible moves
-                    if (board.getPiece(boardPosition).getTeamColor() == color) {
-                        possibleMoves.addAll(board.getPiece(boardPosition).pieceMoves(board, boardPosition));
-                    }
-                }
-            }
+    // Drops everything cached about the current position
+    private void invalidateStatus() {
+        statusBoard = null;
+        statusFlags = 0;
+    }
+
+    // Makes sure the cache describes the current position, clearing it if the position has changed
+    private void checkStatusPosition() {
+        long key = key();
+        if (statusBoard != board || statusKey != key) {
+            statusBoard = board;
+            statusKey = key;
+            statusFlags = 0;
         }
-        return possibleMoves;
     }
 
-    private void unsafeMove(ChessMove move) {
-        ChessPosition start = move.getStartPosition();
-        if (board.getPiece(start) != null) {
-            ChessPiece myPiece = board.getPiece(start);
-            TeamColor color = myPiece.getTeamColor();
-            if (myPiece.getPieceType() == ChessPiece.PieceType.PAWN) {
-                if (myPiece.getTeamColor() == TeamColor.WHITE && move.getEndPosition().getRow() == 8 ||
-                        myPiece.getTeamColor() == TeamColor.BLACK && move.getEndPosition().getRow() == 1) {
-                    board.addPiece(start, null);
-                    board.addPiece(move.getEndPosition(), new ChessPiece(color, move.getPromotionPiece()));
-                }
+    // Whether a team is in check on the live board, looked up at most once per position
+    boolean inCheck(TeamColor teamColor) {
+        checkStatusPosition();
+        int shift = 4 * teamColor.ordinal();
+        if ((statusFlags >>> shift & CHECK_KNOWN) == 0) {
+            int kingSquare = board.kingSquare(teamColor);
+            //boards set up for testing don't always have a king
+            boolean inCheck = kingSquare >= 0 && board.isSquareAttacked(kingSquare, teamColor.opponent());
+            statusFlags |= (CHECK_KNOWN | (inCheck ? IN_CHECK : 0)) << shift;
+        }
+        return (statusFlags >>> shift & IN_CHECK) != 0;
+    }
 
+    // Whether a team has any legal move on the live board, looked up at most once per position
+    boolean hasMove(TeamColor teamColor) {
+        checkStatusPosition();
+        int shift = 4 * teamColor.ordinal();
+        if ((statusFlags >>> shift & MOVE_KNOWN) == 0) {
+            boolean hasMove;
+            if (teamColor == teamTurn) {
+                //the side to move will almost always want its full move list next, so build it now
+                hasMove = !turnMoves().isEmpty();
             } else {
-                board.addPiece(move.getEndPosition(), new ChessPiece(color, myPiece.getPieceType()));
-                board.addPiece(start, null);
+                scratchMoves.clear();
+                hasMove = MoveGenerator.generateLegalMoves(board, teamColor, castlingRights, -1, -1L,
+                        scratchMoves, true);
             }
+            statusFlags |= (MOVE_KNOWN | (hasMove ? HAS_MOVE : 0)) << shift;
+        }
+        return (statusFlags >>> shift & HAS_MOVE) != 0;
+    }
+
+    // Every legal move of the team to move, generated the first time it is needed in each position and
+    // grouped by origin square. The list is the game's own cache: callers read it and must not change it.
+    MoveList turnMoves() {
+        checkStatusPosition();
+        if ((statusFlags & TURN_MOVES_KNOWN) == 0) {
+            generateLegalMoves(teamTurn, scratchMoves);
+            indexByOrigin(scratchMoves, turnMoves, turnMovesFrom);
+            statusFlags |= TURN_MOVES_KNOWN;
         }
+        return turnMoves;
+    }
+
+    // Copies moves into sorted, ordered by origin square, and fills in from as for turnMovesFrom; a counting
+    // sort, as there are only 64 origins
+    static void indexByOrigin(MoveList moves, MoveList sorted, int[] from) {
+        int size = moves.size();
+        Arrays.fill(from, 0);
+        sorted.clear();
+        for (int i = 0; i < size; i++) {
+            from[Move.from(moves.get(i))]++;
+            sorted.add(moves.get(i));
+        }
+        //from[s] becomes the end of square s's run, then counts back down to its start as the run is filled
+        for (int square = 1; square < 64; square++) {
+            from[square] += from[square - 1];
+        }
+        from[64] = size;
+        for (int i = size - 1; i >= 0; i--) {
+            int move = moves.get(i);
+            sorted.set(--from[Move.from(move)], move);
+        }
+    }
+
+    /**
+     * Plays a move on the board without checking that it is legal and switches whose turn it is.
+     * Everything needed to take the move back is pushed onto the undo stack, so a matching
+     * undoMove always restores the game exactly, promotions, castling, en passant and the
+     * rules state included.
+     *
+     * @param move the move in the encoding described in {@link Move}
+     */
+    void doMove(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        ChessPiece.PieceType promotion = Move.promotion(move);
+        boolean enPassant = (move & Move.EN_PASSANT) != 0;
+        boolean castling = (move & Move.CASTLING) != 0;
+        if (undoSize == undoStack.length) {
+            undoStack = Arrays.copyOf(undoStack, undoSize * 2);
+            keyHistory = Arrays.copyOf(keyHistory, undoSize * 2);
+        }
+        keyHistory[undoSize] = key();
+
+        int moved = board.removePiece(from);
+        //an en passant capture takes the pawn beside the mover, not one on the square it lands on
+        int captured = board.removePiece(enPassant ? (from & ~7) | (to & 7) : to);
+        int placed = promotion == null ? moved : ChessBoard.pieceIndex(ChessBoard.pieceFor(moved).getTeamColor(), promotion);
+        board.placePiece(to, placed);
+        if (castling) {
+            //the rook jumps to the square the king passed over
+            board.placePiece((from + to) / 2, board.removePiece(to > from ? from + 3 : from - 4));
+        }
+
+        undoStack[undoSize++] = from | (long) to << UNDO_TO_SHIFT | (long) moved << UNDO_MOVED_SHIFT
+                | (long) (captured + 1) << UNDO_CAPTURED_SHIFT | (long) placed << UNDO_PLACED_SHIFT
+                | (long) castlingRights << UNDO_CASTLING_SHIFT
+                | (long) (enPassantSquare + 1) << UNDO_EN_PASSANT_SHIFT
+                | (long) (halfmoveClock & 0xFFFF) << UNDO_CLOCK_SHIFT
+                | (castling ? UNDO_CASTLED : 0) | (enPassant ? UNDO_TOOK_EN_PASSANT : 0);
+
+        castlingRights &= CASTLING_KEPT[from] & CASTLING_KEPT[to];
+        enPassantSquare = (move & Move.DOUBLE_PUSH) != 0 ? (from + to) / 2 : -1;
+        halfmoveClock = captured >= 0 || moved % 6 == ChessPiece.PieceType.PAWN.ordinal() ? 0 : halfmoveClock + 1;
+        if (teamTurn == TeamColor.BLACK) {
+            fullmoveNumber++;
+        }
+        switchTeams(teamTurn);
+    }
+
+    /**
+     * Takes back the most recent doMove
+     */
+    void undoMove() {
+        long entry = undoStack[--undoSize];
+        int from = (int) (entry & 0x3F);
+        int to = (int) (entry >>> UNDO_TO_SHIFT & 0x3F);
+        int moved = (int) (entry >>> UNDO_MOVED_SHIFT & 0xF);
+        int captured = (int) (entry >>> UNDO_CAPTURED_SHIFT & 0xF) - 1;
+        int placed = (int) (entry >>> UNDO_PLACED_SHIFT & 0xF);
+
+        if ((entry & UNDO_CASTLED) != 0) {
+            board.placePiece(to > from ? from + 3 : from - 4, board.removePiece((from + to) / 2));
+        }
+        board.removePiece(to, placed);
+        if (captured >= 0) {
+            board.placePiece((entry & UNDO_TOOK_EN_PASSANT) != 0 ? (from & ~7) | (to & 7) : to, captured);
+        }
+        board.placePiece(from, moved);
+
+        castlingRights = (int) (entry >>> UNDO_CASTLING_SHIFT & 0xF);
+        enPassantSquare = (int) (entry >>> UNDO_EN_PASSANT_SHIFT & 0x7F) - 1;
+        halfmoveClock = (int) (entry >>> UNDO_CLOCK_SHIFT & 0xFFFF);
+        switchTeams(teamTurn);
+        if (teamTurn == TeamColor.BLACK) {
+            fullmoveNumber--;
+        }
+    }
+
+    /**
+     * Checks whether the current position has already occurred at least count times since the board was set.
+     * Only positions since the last capture or pawn move can match, and only every other one has the same
+     * team to move, so this never looks back more than halfmoveClock / 2 positions.
+     */
+    boolean isRepetition(int count) {
+        long key = key();
+        int oldest = Math.max(0, undoSize - halfmoveClock);
+        int found = 0;
+        for (int i = undoSize - 2; i >= oldest; i -= 2) {
+            if (keyHistory[i] == key && ++found >= count) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines if the current position has occurred three times, counting this one, with the same team to
+     * move, the same castling rights and the same en passant capture available. Either player may then claim
+     * a draw.
+     *
+     * @return True if the position has repeated three times
+     */
+    public boolean isThreefoldRepetition() {
+        return current().isThreefoldRepetition();
+    }
+
+    /**
+     * Determines if fifty moves by each team have passed without a capture or a pawn move, after which either
+     * player may claim a draw
+     *
+     * @return True if the fifty-move rule applies
+     */
+    public boolean isFiftyMoveDraw() {
+        return getHalfmoveClock() >= 100;
     }
 
 
@@ -119,50 +655,327 @@ public class ChessGame {
      * @throws InvalidMoveException if move is invalid
      */
     public void makeMove(ChessMove move) throws InvalidMoveException {
+        long stamp = lock.writeLock();
+        try {
+            applyMove(move);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Makes a move only if the game is still at the version the caller read from getVersion() or a snapshot
+     *
+     * @param move            chess move to perform
+     * @param expectedVersion the version the move was chosen against
+     * @return True if the move was made, false if the game had changed in the meantime
+     * @throws InvalidMoveException if the game is unchanged but the move is invalid
+     */
+    public boolean tryMakeMove(ChessMove move, long expectedVersion) throws InvalidMoveException {
+        long stamp = lock.writeLock();
+        try {
+            if (version != expectedVersion) {
+                return false;
+            }
+            applyMove(move);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return how many changes have been made to the game; it goes up by one with every move made and every
+     * change to the position through a setter, and never goes down
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    // makeMove's checks and bookkeeping, with the write lock held
+    private void applyMove(ChessMove move) throws InvalidMoveException {
         if (board.getPiece(move.getStartPosition()) == null) {
             throw new InvalidMoveException();
         }
-        ChessPosition start = move.getStartPosition();
-        Collection<ChessMove> validMoves = validMoves(start);
         if (board.getPiece(move.getStartPosition()).getTeamColor() != teamTurn) {
             throw new InvalidMoveException();
         }
-        if (validMoves.contains(move)) {
-            ChessPiece myPiece = board.getPiece(start);
-            if(move.getPromotionPiece()!= null){myPiece = new ChessPiece(this.teamTurn,move.getPromotionPiece());}
-            board.addPiece(start, null);
-            board.addPiece(move.getEndPosition(), myPiece);
-            switchTeams(teamTurn);
+        int played = legalMove(Move.fromChessMove(move));
+        if (played < 0) {
+            throw new InvalidMoveException();
+        }
+        recordMove(played);
+        long before = key();
+        doMove(played);
+        //makeMove is never taken back, so once nothing before an irreversible move can repeat it isn't needed
+        if (halfmoveClock == 0) {
+            undoSize = 0;
         }
-        else{throw new InvalidMoveException();}
+        invalidateStatus();
+        version++;
+        //the new snapshot only shares the previous one's board if that still shows the position the move was
+        //made from, which pieces changed straight through getBoard() would break
+        GameSnapshot previous = snapshot;
+        snapshot = snapshotOf(previous != null && previous.getZobristKey() == before ? previous : null, played);
+    }
 
+    // A snapshot of the position as it is now, made by playing move from previous, or starting a new chain
+    // when previous is null
+    private GameSnapshot snapshotOf(GameSnapshot previous, int move) {
+        return new GameSnapshot(board, teamTurn, castlingRights, enPassantSquare, halfmoveClock, fullmoveNumber,
+                key(), version, currentPly, isRepetition(2), previous, move);
     }
 
     /**
-     * Determines if the given team is in check
+     * @return how many moves the history holds, counting any after the current ply
+     */
+    public int getHistoryLength() {
+        for (; ; Thread.onSpinWait()) {
+            long stamp = lock.tryOptimisticRead();
+            int length = historyLength;
+            if (lock.validate(stamp)) {
+                return length;
+            }
+        }
+    }
+
+    /**
+     * @return how many moves of the history have been played to reach the board as it is now
+     */
+    public int getCurrentPly() {
+        long stamp = lock.tryOptimisticRead();
+        int ply = currentPly;
+        return lock.validate(stamp) ? ply : snapshot.getPly();
+    }
+
+    /**
+     * Gets a move from the history. The history starts when the board or the team to move is set, and holds
+     * every move made since; setting the castling rights, en passant square or move counters keeps the moves
+     * up to the current ply.
      *
-     * @param teamColor which team to check for check
-     * @return True if the specified team is in check
+     * @param ply how many moves were played before it, from 0 to getHistoryLength() - 1
+     * @return the move played from that ply
      */
-    public boolean isInCheck(TeamColor teamColor) {
-        ChessGame.TeamColor otherColor;
-        if (teamColor == TeamColor.WHITE) {
-            otherColor = TeamColor.BLACK;
-        } else {
-            otherColor = TeamColor.WHITE;
+    public ChessMove getHistoryMove(int ply) {
+        for (; ; Thread.onSpinWait()) {
+            long stamp = lock.tryOptimisticRead();
+            int length = historyLength;
+            char[] moves = historyMoves;
+            int move = ply >= 0 && ply < length && ply < moves.length ? moves[ply] : -1;
+            if (lock.validate(stamp)) {
+                Objects.checkIndex(ply, length);
+                return Move.toChessMove(move);
+            }
         }
+    }
 
-        Collection<ChessMove> otherMoves = possibleMoves(otherColor);
+    /**
+     * Puts the game in the position after the given number of moves of its history, forwards or back, by
+     * loading the nearest stored position before it and replaying at most CHECKPOINT_INTERVAL moves. The
+     * history is kept, so the game can go forward again until a move is made or the rules state is set, which
+     * replaces everything after the current ply. Repetitions are only counted from the stored position on.
+     *
+     * @param ply how many moves of the history to have played, from 0 to getHistoryLength()
+     * @throws IndexOutOfBoundsException if the history doesn't reach that ply
+     */
+    public void goToPly(int ply) {
+        long stamp = lock.writeLock();
+        try {
+            Objects.checkIndex(ply, historyLength + 1);
+            if (ply == currentPly) {
+                return;
+            }
+            int checkpoint = checkpointsBefore(ply + 1) - 1;
+            //playing on from where the board is is cheaper when it's no further back than the checkpoint
+            if (ply < currentPly || currentPly < checkpointPlies[checkpoint]) {
+                loadCheckpoint(checkpoint);
+            }
+            playHistoryTo(ply);
+            invalidateStatus();
+            version++;
+            snapshot = snapshotOf(null, -1);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
 
-        for (ChessMove move : otherMoves) {
-            ChessPiece piece = board.getPiece(move.getEndPosition());
-            if (board.getPiece(move.getEndPosition()) != null &&
-                    board.getPiece(move.getEndPosition()).getPieceType() == ChessPiece.PieceType.KING &&
-                    board.getPiece(move.getEndPosition()).getTeamColor() == teamColor) {
-                return true;
+    // Adds a move made from the current ply to the history, first dropping any moves after the current ply
+    // and storing the position if this ply is due a checkpoint
+    private void recordMove(int move) {
+        historyLength = currentPly;
+        checkpointCount = checkpointsBefore(currentPly + 1);
+        if (checkpointCount == 0 || currentPly - checkpointPlies[checkpointCount - 1] >= CHECKPOINT_INTERVAL) {
+            storeCheckpoint();
+        }
+        if (historyLength == historyMoves.length) {
+            historyMoves = Arrays.copyOf(historyMoves, historyLength * 2);
+        }
+        historyMoves[historyLength++] = (char) Move.withoutFlags(move);
+        currentPly = historyLength;
+    }
+
+    // How many checkpoints were taken before the given ply; there are only ever a few past the last one asked
+    // about, so this looks from the end
+    private int checkpointsBefore(int ply) {
+        int count = checkpointCount;
+        while (count > 0 && checkpointPlies[count - 1] >= ply) {
+            count--;
+        }
+        return count;
+    }
+
+    // Adds the current position as a checkpoint at the current ply, after every checkpoint before it
+    private void storeCheckpoint() {
+        int offset = checkpointCount * CHECKPOINT_BYTES;
+        if (offset == checkpoints.length) {
+            checkpoints = Arrays.copyOf(checkpoints, offset * 2);
+            checkpointPlies = Arrays.copyOf(checkpointPlies, checkpointCount * 2);
+        }
+        encodePosition(checkpoints, offset);
+        checkpointPlies[checkpointCount++] = currentPly;
+    }
+
+    // Sets the board to a checkpoint's position, keeping the history
+    private void loadCheckpoint(int checkpoint) {
+        int length = historyLength;
+        int count = checkpointCount;
+        GameCodec.readPosition(checkpoints, checkpoint * CHECKPOINT_BYTES, CHECKPOINT_BYTES, this);
+        historyLength = length;
+        checkpointCount = count;
+        currentPly = checkpointPlies[checkpoint];
+    }
+
+    // Replays the history from the current ply up to the given one. A checkpoint reached on the way that
+    // differs from the replayed position marks a setter changing the rules state there, so it is loaded.
+    private void playHistoryTo(int ply) {
+        int next = checkpointsBefore(currentPly + 1);
+        byte[] replayed = null;
+        while (currentPly < ply) {
+            int move = legalMove(historyMoves[currentPly]);
+            if (move < 0) {
+                throw new IllegalArgumentException("History move " + Move.toChessMove(historyMoves[currentPly])
+                        + " at ply " + currentPly + " isn't legal");
+            }
+            doMove(move);
+            currentPly++;
+            if (next < checkpointCount && checkpointPlies[next] == currentPly) {
+                if (replayed == null) {
+                    replayed = new byte[CHECKPOINT_BYTES];
+                }
+                int length = encodePosition(replayed, 0);
+                int offset = next * CHECKPOINT_BYTES;
+                if (!Arrays.equals(replayed, 0, length, checkpoints, offset, offset + length)) {
+                    loadCheckpoint(next);
+                }
+                next++;
             }
         }
-        return false;
+    }
+
+    private void clearHistory() {
+        historyLength = 0;
+        currentPly = 0;
+        checkpointCount = 0;
+    }
+
+    // How many checkpoints the history holds, for GameCodec and ChessJson
+    int getCheckpointCount() {
+        return checkpointCount;
+    }
+
+    // The ply a checkpoint was taken at
+    int getCheckpointPly(int checkpoint) {
+        return checkpointPlies[checkpoint];
+    }
+
+    // Sets another game, one no other thread uses, to a checkpoint's position
+    void copyCheckpoint(int checkpoint, ChessGame into) {
+        GameCodec.readPosition(checkpoints, checkpoint * CHECKPOINT_BYTES, CHECKPOINT_BYTES, into);
+    }
+
+    // GameCodec.encode from the fields, which the getters would only read through the snapshot under the lock
+    private int encodePosition(byte[] out, int offset) {
+        return GameCodec.encode(board, teamTurn, castlingRights, enPassantSquare, halfmoveClock,
+                fullmoveNumber, out, offset);
+    }
+
+    // The history move from a ply as a Move.withoutFlags code
+    int getHistoryCode(int ply) {
+        return historyMoves[ply];
+    }
+
+    /**
+     * Puts back a saved history into a freshly loaded game that no other thread has seen yet
+     *
+     * @param moves       the history moves as Move.withoutFlags codes
+     * @param length      how many moves there are
+     * @param ply         how many of them had been played
+     * @param plies       the ply of each checkpoint, in order, starting with 0
+     * @param checkpoints each checkpoint's position, as the games GameCodec.encode is given
+     * @throws IllegalArgumentException if the history is inconsistent or doesn't lead to the loaded position
+     */
+    void restoreHistory(char[] moves, int length, int ply, int[] plies, ChessGame[] checkpoints) {
+        int count = plies.length;
+        if (ply < 0 || ply > length || length > moves.length || count != checkpoints.length
+                || (length > 0 && (count == 0 || plies[0] != 0))) {
+            throw new IllegalArgumentException("Inconsistent move history");
+        }
+        for (int i = 1; i < count; i++) {
+            if (plies[i] <= plies[i - 1] || plies[i] > length
+                    || plies[i] - plies[i - 1] > CHECKPOINT_INTERVAL) {
+                throw new IllegalArgumentException("Bad checkpoint ply " + plies[i]);
+            }
+        }
+        if (length == 0) {
+            return;
+        }
+        byte[] loaded = new byte[CHECKPOINT_BYTES];
+        int loadedLength = encodePosition(loaded, 0);
+        historyMoves = Arrays.copyOf(moves, Math.max(length, CHECKPOINT_INTERVAL));
+        historyLength = length;
+        this.checkpoints = new byte[count * CHECKPOINT_BYTES];
+        checkpointPlies = Arrays.copyOf(plies, count);
+        for (int i = 0; i < count; i++) {
+            GameCodec.encode(checkpoints[i], this.checkpoints, i * CHECKPOINT_BYTES);
+        }
+        checkpointCount = count;
+
+        loadCheckpoint(checkpointsBefore(Math.max(0, ply - halfmoveClock) + 1) - 1);
+        playHistoryTo(ply);
+        byte[] replayed = new byte[CHECKPOINT_BYTES];
+        if (encodePosition(replayed, 0) != loadedLength || !Arrays.equals(replayed, loaded)) {
+            throw new IllegalArgumentException("The move history doesn't lead to the saved position");
+        }
+        invalidateStatus();
+        version++;
+        snapshot = snapshotOf(null, -1);
+    }
+
+    /**
+     * Finds the legal move for the team to move with the same from square, to square and promotion as the
+     * requested one. Callers play the generated move rather than the requested one so its flags come along.
+     *
+     * @return the legal move in the encoding described in {@link Move}, or -1 if the move isn't legal
+     */
+    int legalMove(int requested) {
+        MoveList moves = turnMoves();
+        int from = Move.from(requested);
+        for (int i = turnMovesFrom[from]; i < turnMovesFrom[from + 1]; i++) {
+            if (Move.sameMove(moves.get(i), requested)) {
+                return moves.get(i);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Determines if the given team is in check
+     *
+     * @param teamColor which team to check for check
+     * @return True if the specified team is in check
+     */
+    public boolean isInCheck(TeamColor teamColor) {
+        return current().inCheck(teamColor);
     }
 
     /**
@@ -172,9 +985,8 @@ public class ChessGame {
      * @return True if the specified team is in checkmate
      */
     public boolean isInCheckmate(TeamColor teamColor) {
-        Collection<ChessMove> possibleMoves = possibleMoves(teamColor);
-        possibleMoves.removeIf(move -> movePutsInCheck(teamColor, move));
-        return possibleMoves.isEmpty() && isInCheck(teamColor);
+        GameSnapshot current = current();
+        return current.inCheck(teamColor) && !current.hasMove(teamColor);
     }
 
     /**
@@ -185,36 +997,66 @@ public class ChessGame {
      * @return True if the specified team is in stalemate, otherwise false
      */
     public boolean isInStalemate(TeamColor teamColor) {
-        if (isInCheck(teamColor)) {
-            return false;
-        }
+        GameSnapshot current = current();
+        return !current.inCheck(teamColor) && !current.hasMove(teamColor);
+    }
 
-        Collection<ChessMove> possibleMoves = possibleMoves(teamColor);
-        Collection<ChessMove> validMoves = possibleMoves(teamColor);
-        //makes a two collections so I can use 1 for the for loop and the other for the return without getting
-        // a concurrent modification exception
+    /**
+     * Gets an immutable picture of the game as of its last change
+     *
+     * @return the latest snapshot
+     */
+    public GameSnapshot snapshot() {
+        return current();
+    }
 
-        for (ChessMove move : possibleMoves) {
-            if (movePutsInCheck(teamColor, move)) {
-                validMoves.remove(move);
+    // The latest snapshot, first publishing a new one if the pieces were changed in place through getBoard()
+    private GameSnapshot current() {
+        long stamp = lock.tryOptimisticRead();
+        GameSnapshot current = snapshot;
+        long key = key();
+        if (!lock.validate(stamp)) {
+            //a change was under way, so the key may be torn; the change publishes its own snapshot
+            return snapshot;
+        }
+        if (key == current.getZobristKey()) {
+            return current;
+        }
+        stamp = lock.writeLock();
+        try {
+            if (snapshot.getZobristKey() != key()) {
+                invalidateStatus();
+                version++;
+                snapshot = snapshotOf(null, -1);
             }
+            return snapshot;
+        } finally {
+            lock.unlockWrite(stamp);
         }
-        return validMoves.isEmpty();
     }
 
-    private boolean movePutsInCheck(TeamColor teamColor, ChessMove move) {
-        ChessPiece destPiece = board.getPiece(move.getEndPosition());
-        unsafeMove(move);
-        ChessMove undo = new ChessMove(move.getEndPosition(), move.getStartPosition(), move.getPromotionPiece());
-        if (isInCheck(teamColor)) {
-            unsafeMove(undo);
-            board.addPiece(move.getEndPosition(), destPiece);
-            return true;
-        } else {
-            unsafeMove(undo);
-            board.addPiece(move.getEndPosition(), destPiece);
-            return false;
+    /**
+     * Gets the Zobrist key of the current position: the board's key combined with whose turn it is, the
+     * castling rights, and the en passant square when a pawn could actually capture there.
+     * Maps, caches and repetition checks can key on this instead of hashing the whole board.
+     *
+     * @return a 64-bit hash of the position
+     */
+    public long getZobristKey() {
+        long stamp = lock.tryOptimisticRead();
+        long key = key();
+        return lock.validate(stamp) ? key : snapshot.getZobristKey();
+    }
+
+    // getZobristKey from the live fields
+    long key() {
+        long key = board.getZobristKey() ^ Zobrist.side(teamTurn) ^ Zobrist.castling(castlingRights);
+        if (enPassantSquare >= 0
+                && (AttackTables.pawnAttacks(teamTurn.opponent(), enPassantSquare)
+                & board.pieces(teamTurn, ChessPiece.PieceType.PAWN)) != 0) {
+            key ^= Zobrist.enPassant(enPassantSquare);
         }
+        return key;
     }
 
     /**
@@ -223,7 +1065,40 @@ public class ChessGame {
      * @param board the new board to use
      */
     public void setBoard(ChessBoard board) {
-        this.board = board;
+        long stamp = lock.writeLock();
+        try {
+            this.board = board;
+            //moves on the undo stack belong to the old board
+            undoSize = 0;
+            //a board on its own doesn't say what has moved, so any king and rook still at home may castle
+            castlingRights = homeCastlingRights(board);
+            enPassantSquare = -1;
+            halfmoveClock = 0;
+            fullmoveNumber = 1;
+            positionChanged();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // The castling rights a board allows if no king or rook standing on its starting square has moved yet
+    private static int homeCastlingRights(ChessBoard board) {
+        int rights = 0;
+        for (TeamColor color : TeamColor.values()) {
+            int home = color == TeamColor.WHITE ? 4 : 60;
+            if (board.kingSquare(color) != home) {
+                continue;
+            }
+            long rooks = board.pieces(color, ChessPiece.PieceType.ROOK);
+            int shift = 2 * color.ordinal();
+            if ((rooks & 1L << (home + 3)) != 0) {
+                rights |= WHITE_KINGSIDE << shift;
+            }
+            if ((rooks & 1L << (home - 4)) != 0) {
+                rights |= WHITE_QUEENSIDE << shift;
+            }
+        }
+        return rights;
     }
 
     /**
@@ -244,12 +1119,13 @@ public class ChessGame {
             return false;
         }
         ChessGame chessGame = (ChessGame) o;
-        return teamTurn == chessGame.teamTurn && Objects.equals(board, chessGame.board);
+        return teamTurn == chessGame.teamTurn && castlingRights == chessGame.castlingRights
+                && enPassantSquare == chessGame.enPassantSquare && Objects.equals(board, chessGame.board);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(teamTurn, board);
+        return Long.hashCode(getZobristKey());
     }
 }
 
@@ -0,0 +1,225 @@
+package chess;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming Gson adapters for the chess model, named in {@code @JsonAdapter} so any Gson uses them.
+ * A game is written as its FEN plus, if it has one, its move history and checkpoints.
+ */
+public final class ChessJson {
+
+    public static final TypeAdapter<ChessGame> GAME = new GameAdapter().nullSafe();
+    public static final TypeAdapter<ChessBoard> BOARD = new BoardAdapter().nullSafe();
+    public static final TypeAdapter<ChessPiece> PIECE = new PieceAdapter().nullSafe();
+
+    /**
+     * The shared Gson instance with every chess adapter registered. Gson instances are thread safe.
+     */
+    public static final Gson GSON = builder().create();
+
+    private static final ThreadLocal<StringBuilder> TEXT = ThreadLocal.withInitial(() -> new StringBuilder(90));
+
+    private ChessJson() {
+    }
+
+    /**
+     * @return a builder with the chess adapters already registered, for code that needs more settings
+     */
+    public static GsonBuilder builder() {
+        return new GsonBuilder()
+                .registerTypeAdapter(ChessGame.class, GAME)
+                .registerTypeAdapter(ChessBoard.class, BOARD)
+                .registerTypeAdapter(ChessPiece.class, PIECE);
+    }
+
+    private static StringBuilder text() {
+        StringBuilder text = TEXT.get();
+        text.setLength(0);
+        return text;
+    }
+
+    // {"fen":"...","moves":"e2e4 e7e5","ply":2,"checkpoints":[{"ply":0,"fen":"..."}]}, the history fields optional.
+    // Package-private with an implicit no-argument constructor so Gson can create it from the @JsonAdapter annotation
+    static final class GameAdapter extends TypeAdapter<ChessGame> {
+
+        @Override
+        public void write(JsonWriter out, ChessGame game) throws IOException {
+            StringBuilder text = text();
+            Fen.append(game, text);
+            out.beginObject().name("fen").value(text.toString());
+            int length = game.getHistoryLength();
+            if (length > 0) {
+                text.setLength(0);
+                for (int ply = 0; ply < length; ply++) {
+                    if (ply > 0) {
+                        text.append(' ');
+                    }
+                    appendMove(game.getHistoryCode(ply), text);
+                }
+                out.name("moves").value(text.toString()).name("ply").value(game.getCurrentPly());
+                out.name("checkpoints").beginArray();
+                ChessGame checkpoint = new ChessGame();
+                for (int i = 0; i < game.getCheckpointCount(); i++) {
+                    game.copyCheckpoint(i, checkpoint);
+                    text.setLength(0);
+                    Fen.append(checkpoint, text);
+                    out.beginObject().name("ply").value(game.getCheckpointPly(i))
+                            .name("fen").value(text.toString()).endObject();
+                }
+                out.endArray();
+            }
+            out.endObject();
+        }
+
+        @Override
+        public ChessGame read(JsonReader in) throws IOException {
+            ChessGame game = null;
+            String moves = null;
+            int ply = 0;
+            List<Integer> plies = new ArrayList<>();
+            List<ChessGame> checkpoints = new ArrayList<>();
+            in.beginObject();
+            try {
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "fen" -> {
+                            game = new ChessGame();
+                            Fen.load(in.nextString(), game);
+                        }
+                        case "moves" -> moves = in.nextString();
+                        case "ply" -> ply = in.nextInt();
+                        case "checkpoints" -> {
+                            in.beginArray();
+                            while (in.hasNext()) {
+                                readCheckpoint(in, plies, checkpoints);
+                            }
+                            in.endArray();
+                        }
+                        //fields added by newer writers
+                        default -> in.skipValue();
+                    }
+                }
+                in.endObject();
+                if (game == null) {
+                    throw new JsonSyntaxException("Chess game without a \"fen\" field at " + in.getPath());
+                }
+                if (moves != null && !moves.isEmpty()) {
+                    String[] played = moves.split(" ");
+                    char[] codes = new char[played.length];
+                    for (int i = 0; i < played.length; i++) {
+                        codes[i] = (char) parseMove(played[i]);
+                    }
+                    int[] checkpointPlies = plies.stream().mapToInt(Integer::intValue).toArray();
+                    game.restoreHistory(codes, codes.length, ply, checkpointPlies,
+                            checkpoints.toArray(new ChessGame[0]));
+                }
+            } catch (IllegalArgumentException e) {
+                throw new JsonSyntaxException(e.getMessage(), e);
+            }
+            return game;
+        }
+
+        private static void readCheckpoint(JsonReader in, List<Integer> plies, List<ChessGame> checkpoints)
+                throws IOException {
+            int ply = -1;
+            ChessGame checkpoint = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "ply" -> ply = in.nextInt();
+                    case "fen" -> checkpoint = Fen.parse(in.nextString());
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            if (ply < 0 || checkpoint == null) {
+                throw new JsonSyntaxException("Checkpoint without a ply and a \"fen\" at " + in.getPath());
+            }
+            plies.add(ply);
+            checkpoints.add(checkpoint);
+        }
+
+        // Writes a move as its from and to squares and a lowercase promotion letter, like "e7e8q"
+        private static void appendMove(int move, StringBuilder out) {
+            appendSquare(Move.from(move), out);
+            appendSquare(Move.to(move), out);
+            ChessPiece.PieceType promotion = Move.promotion(move);
+            if (promotion != null) {
+                out.append(Fen.pieceLetter(ChessBoard.pieceIndex(ChessGame.TeamColor.BLACK, promotion)));
+            }
+        }
+
+        private static void appendSquare(int square, StringBuilder out) {
+            out.append((char) ('a' + (square & 7))).append((char) ('1' + (square >>> 3)));
+        }
+
+        private static int parseMove(String text) {
+            int promotion = text.length() == 5 ? Fen.pieceIndex(text.charAt(4)) : -1;
+            if (text.length() < 4 || text.length() > 5 || (text.length() == 5 && promotion < 0)) {
+                throw new IllegalArgumentException("Bad move \"" + text + "\" in the move history");
+            }
+            return Move.encode(parseSquare(text, 0), parseSquare(text, 2),
+                    promotion < 0 ? null : ChessBoard.pieceFor(promotion).getPieceType(), 0);
+        }
+
+        private static int parseSquare(String text, int start) {
+            int file = text.charAt(start) - 'a';
+            int rank = text.charAt(start + 1) - '1';
+            if (file < 0 || file > 7 || rank < 0 || rank > 7) {
+                throw new IllegalArgumentException("Bad move \"" + text + "\" in the move history");
+            }
+            return rank * 8 + file;
+        }
+    }
+
+    // A board on its own is the FEN piece placement, a piece its FEN letter
+    static final class BoardAdapter extends TypeAdapter<ChessBoard> {
+
+        @Override
+        public void write(JsonWriter out, ChessBoard board) throws IOException {
+            StringBuilder placement = text();
+            Fen.appendBoard(board, placement);
+            out.value(placement.toString());
+        }
+
+        @Override
+        public ChessBoard read(JsonReader in) throws IOException {
+            ChessBoard board = new ChessBoard();
+            try {
+                Fen.loadBoard(in.nextString(), board);
+            } catch (IllegalArgumentException e) {
+                throw new JsonSyntaxException(e.getMessage(), e);
+            }
+            return board;
+        }
+    }
+
+    static final class PieceAdapter extends TypeAdapter<ChessPiece> {
+
+        @Override
+        public void write(JsonWriter out, ChessPiece piece) throws IOException {
+            out.value(String.valueOf(Fen.pieceLetter(ChessBoard.pieceIndex(piece.getTeamColor(),
+                    piece.getPieceType()))));
+        }
+
+        @Override
+        public ChessPiece read(JsonReader in) throws IOException {
+            String letter = in.peek() == JsonToken.STRING ? in.nextString() : "";
+            int index = letter.length() == 1 ? Fen.pieceIndex(letter.charAt(0)) : -1;
+            if (index < 0) {
+                throw new JsonSyntaxException("Expected a piece letter at " + in.getPath());
+            }
+            return ChessBoard.pieceFor(index);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package chess;
 
-import java.util.ArrayList;
+import com.google.gson.annotations.JsonAdapter;
+
 import java.util.Collection;
 import java.util.Objects;
 
@@ -10,16 +11,38 @@ import java.util.Objects;
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
  */
+@JsonAdapter(ChessJson.PieceAdapter.class)
 public class ChessPiece {
 
-    private ChessGame.TeamColor color;
-    private PieceType pieceType;
+    private final ChessGame.TeamColor color;
+    private final PieceType pieceType;
+
+    // One shared instance per color and type, indexed by [color ordinal][type ordinal]
+    private static final ChessPiece[][] PIECES = new ChessPiece[2][6];
+
+    static {
+        for (ChessGame.TeamColor color : ChessGame.TeamColor.values()) {
+            for (PieceType type : PieceType.values()) {
+                PIECES[color.ordinal()][type.ordinal()] = new ChessPiece(color, type);
+            }
+        }
+    }
 
     public ChessPiece(ChessGame.TeamColor pieceColor, ChessPiece.PieceType type) {
         color = pieceColor;
         pieceType = type;
     }
 
+    /**
+     * Gets the shared instance for a piece. Pieces never change once built, so there is no need to
+     * allocate a new one every time a piece moves or promotes.
+     *
+     * @return the cached piece of this color and type
+     */
+    public static ChessPiece of(ChessGame.TeamColor pieceColor, ChessPiece.PieceType type) {
+        return PIECES[pieceColor.ordinal()][type.ordinal()];
+    }
+
     /**
      * The various different chess piece options
      */
@@ -54,407 +77,9 @@ public class ChessPiece {
      * @return Collection of valid moves
      */
     public Collection<ChessMove> pieceMoves(ChessBoard board, ChessPosition myPosition) {
-        return switch (this.pieceType) {
-            case KING -> getKingMoves(board, myPosition);
-            case QUEEN -> getQueenMoves(board, myPosition);
-            case BISHOP -> getBishopMoves(board, myPosition);
-            case KNIGHT -> getKnightMoves(board, myPosition);
-            case ROOK -> getRookMoves(board, myPosition);
-            case PAWN -> getPawnMoves(board, myPosition);
-        };
-
-    }
-
-    private Collection<ChessMove> getRookMoves(ChessBoard board, ChessPosition myPosition) {
-        Collection<ChessMove> rookMoves = new ArrayList<>();
-        ChessGame.TeamColor myColor = board.getPiece(myPosition).color;
-        int currentRow = myPosition.getRow();
-        int currentCol = myPosition.getColumn();
-        int count = 1;
-        boolean forward = true;
-        boolean backward = true;
-        boolean left = true;
-        boolean right = true;
-
-        while (count <= 7) {
-
-            //checks count squares forward
-            if (currentRow + count <= 8) {
-                if (forward) {
-                    ChessPosition Forward = new ChessPosition(currentRow + count, currentCol);
-                    if (board.getPiece(Forward) == null) {
-                        rookMoves.add(new ChessMove(myPosition, Forward, null));
-                    } else if (board.getPiece(Forward).getTeamColor() != myColor) {
-                        rookMoves.add(new ChessMove(myPosition, Forward, null));
-                        forward = false;
-                    } else {
-                        forward = false;
-                    }
-                }
-            } else {
-                forward = false;
-            }
-
-            //checks count squares backward
-
-            if (currentRow - count >= 1) {
-                if (backward) {
-                    ChessPosition Backward = new ChessPosition(currentRow - count, currentCol);
-                    if (board.getPiece(Backward) == null) {
-                        rookMoves.add(new ChessMove(myPosition, Backward, null));
-                    } else if (board.getPiece(Backward).getTeamColor() != myColor) {
-                        rookMoves.add(new ChessMove(myPosition, Backward, null));
-                        backward = false;
-                    } else {
-                        backward = false;
-                    }
-                }
-            } else {
-                backward = false;
-            }
-
-            //checks count squares to the right
-
-            if (currentCol + count <= 8) {
-                if (right) {
-                    ChessPosition Right = new ChessPosition(currentRow, currentCol + count);
-                    if (board.getPiece(Right) == null) {
-                        rookMoves.add(new ChessMove(myPosition, Right, null));
-                    } else if (board.getPiece(Right).getTeamColor() != myColor) {
-                        rookMoves.add(new ChessMove(myPosition, Right, null));
-                        right = false;
-                    } else {
-                        right = false;
-                    }
-                }
-            } else {
-                right = false;
-            }
-
-            //checks count squares to the left
-
-            if (currentCol - count >= 1) {
-                if (left) {
-                    ChessPosition Left = new ChessPosition(currentRow, currentCol - count);
-                    if (board.getPiece(Left) == null) {
-                        rookMoves.add(new ChessMove(myPosition, Left, null));
-                    } else if (board.getPiece(Left).getTeamColor() != myColor) {
-                        rookMoves.add(new ChessMove(myPosition, Left, null));
-                        left = false;
-                    } else {
-                        left = false;
-                    }
-                }
-            } else {
-                left = false;
-            }
-            count++;
-        }
-        return rookMoves;
-    }
-
-    private Collection<ChessMove> getKnightMoves(ChessBoard board, ChessPosition myPosition) {
-        Collection<ChessMove> knightMoves = new ArrayList<>();
-        int currentRow = myPosition.getRow();
-        int currentCol = myPosition.getColumn();
-        ChessGame.TeamColor myColor = board.getPiece(myPosition).color;
-
-        //right 1 forward 2
-        if (currentRow + 2 < 9 && currentCol + 1 < 9) {
-            ChessPosition newPosition = new ChessPosition(currentRow + 2, currentCol + 1);
-            if (board.getPiece(newPosition) == null || board.getPiece(newPosition).color != myColor) {
-                knightMoves.add(new ChessMove(myPosition, newPosition, null));
-            }
-        }
-
-        //left 1 forward 2
-        if (currentRow + 2 < 9 && currentCol - 1 > 0) {
-            ChessPosition newPosition = new ChessPosition(currentRow + 2, currentCol - 1);
-            if (board.getPiece(newPosition) == null || board.getPiece(newPosition).color != myColor) {
-                knightMoves.add(new ChessMove(myPosition, newPosition, null));
-            }
-        }
-
-        //right 2 forward 1
-        if (currentRow + 1 < 9 && currentCol + 2 < 9) {
-            ChessPosition newPosition = new ChessPosition(currentRow + 1, currentCol + 2);
-            if (board.getPiece(newPosition) == null || board.getPiece(newPosition).color != myColor) {
-                knightMoves.add(new ChessMove(myPosition, newPosition, null));
-            }
-        }
-
-        //left 2 forward 1
-        if (currentCol - 2 > 0 && currentRow + 1 < 9) {
-            ChessPosition newPosition = new ChessPosition(currentRow + 1, currentCol - 2);
-            if (board.getPiece(newPosition) == null || board.getPiece(newPosition).color != myColor) {
-                knightMoves.add(new ChessMove(myPosition, newPosition, null));
-            }
-        }
-
-        //right 2 back 1
-        if (currentCol + 2 < 9 && currentRow - 1 > 0) {
-            ChessPosition newPosition = new ChessPosition(currentRow - 1, currentCol + 2);
-            if (board.getPiece(newPosition) == null || board.getPiece(newPosition).color != myColor) {
-                knightMoves.add(new ChessMove(myPosition, newPosition, null));
-            }
-        }
-
-        //left 2 back 1
-        if (currentRow - 1 > 0 && currentCol - 2 > 0) {
-            ChessPosition newPosition = new ChessPosition(currentRow - 1, currentCol - 2);
-            if (board.getPiece(newPosition) == null || board.getPiece(newPosition).color != myColor) {
-                knightMoves.add(new ChessMove(myPosition, newPosition, null));
-            }
-        }
-
-        //right 1 back 2
-        if (currentRow - 2 > 0 && currentCol + 1 < 9) {
-            ChessPosition newPosition = new ChessPosition(currentRow - 2, currentCol + 1);
-            if (board.getPiece(newPosition) == null || board.getPiece(newPosition).color != myColor) {
-                knightMoves.add(new ChessMove(myPosition, newPosition, null));
-            }
-        }
-
-        //left 1 back 2
-        if (currentRow - 2 > 0 && currentCol - 1 > 0) {
-            ChessPosition newPosition = new ChessPosition(currentRow - 2, currentCol - 1);
-            if (board.getPiece(newPosition) == null || board.getPiece(newPosition).color != myColor) {
-                knightMoves.add(new ChessMove(myPosition, newPosition, null));
-            }
-        }
-        return knightMoves;
-    }
-
-    private Collection<ChessMove> getBishopMoves(ChessBoard board, ChessPosition myPosition) {
-        Collection<ChessMove> bishopMoves = new ArrayList<>();
-        int currentRow = myPosition.getRow();
-        int currentCol = myPosition.getColumn();
-        ChessGame.TeamColor myColor = board.getPiece(myPosition).getTeamColor();
-
-        int count = 1;
-
-        while (currentRow + count <= 8 && currentCol + count <= 8) {
-            ChessPosition newPosition = new ChessPosition(currentRow + count, currentCol + count);
-            if (board.getPiece(newPosition) == null) {
-                bishopMoves.add(new ChessMove(myPosition, newPosition, null));
-            } else if (board.getPiece(newPosition).getTeamColor() != myColor) {
-                bishopMoves.add(new ChessMove(myPosition, newPosition, null));
-                break;
-            } else {
-                break;
-            }
-            count++;
-        }
-        count = 1;
-        while (currentRow + count <= 8 && currentCol - count > 0) {
-            ChessPosition newPosition = new ChessPosition(currentRow + count, currentCol - count);
-            if (board.getPiece(newPosition) == null) {
-                bishopMoves.add(new ChessMove(myPosition, newPosition, null));
-            } else if (board.getPiece(newPosition).getTeamColor() != myColor) {
-                bishopMoves.add(new ChessMove(myPosition, newPosition, null));
-                break;
-            } else {
-                break;
-            }
-            count++;
-        }
-        count = 1;
-        while (currentRow - count > 0 && currentCol + count <= 8) {
-            ChessPosition newPosition = new ChessPosition(currentRow - count, currentCol + count);
-            if (board.getPiece(newPosition) == null) {
-                bishopMoves.add(new ChessMove(myPosition, newPosition, null));
-            } else if (board.getPiece(newPosition).getTeamColor() != myColor) {
-                bishopMoves.add(new ChessMove(myPosition, newPosition, null));
-                break;
-            } else {
-                break;
-            }
-            count++;
-        }
-        count = 1;
-        while (currentRow - count > 0 && currentCol - count > 0) {
-            ChessPosition newPosition = new ChessPosition(currentRow - count, currentCol - count);
-            if (board.getPiece(newPosition) == null) {
-                bishopMoves.add(new ChessMove(myPosition, newPosition, null));
-            } else if (board.getPiece(newPosition).getTeamColor() != myColor) {
-                bishopMoves.add(new ChessMove(myPosition, newPosition, null));
-                break;
-            } else {
-                break;
-            }
-            count++;
-        }
-        return bishopMoves;
-    }
-
-    private Collection<ChessMove> getQueenMoves(ChessBoard board, ChessPosition myPosition) {
-        Collection<chess.ChessMove> queenMoves = new ArrayList<>();
-        queenMoves.addAll(getRookMoves(board, myPosition));
-        queenMoves.addAll(getBishopMoves(board, myPosition));
-        return queenMoves;
-    }
-
-    private Collection<ChessMove> getKingMoves(ChessBoard board, ChessPosition myPosition) {
-        Collection<chess.ChessMove> kingMoves = new ArrayList<>();
-        int currentRow = myPosition.getRow();
-        int currentCol = myPosition.getColumn();
-        ChessGame.TeamColor myColor = board.getPiece(myPosition).getTeamColor();
-
-        if (currentRow + 1 <= 8) {
-            ChessPosition newPosition = new ChessPosition(currentRow + 1, currentCol);
-            if (board.getPiece(newPosition) == null || board.getPiece(newPosition).getTeamColor() != myColor) {
-                kingMoves.add(new ChessMove(myPosition, newPosition, null));
-            }
-        }
-        if (currentRow - 1 > 0) {
-            ChessPosition newPosition = new ChessPosition(currentRow - 1, currentCol);
-            if (board.getPiece(newPosition) == null || board.getPiece(newPosition).getTeamColor() != myColor) {
-                kingMoves.add(new ChessMove(myPosition, newPosition, null));
-            }
-        }
-        if (currentCol + 1 <= 8) {
-            ChessPosition newPosition = new ChessPosition(currentRow, currentCol + 1);
-            if (board.getPiece(newPosition) == null || board.getPiece(newPosition).getTeamColor() != myColor) {
-                kingMoves.add(new ChessMove(myPosition, newPosition, null));
-            }
-        }
-        if (currentCol - 1 > 0) {
-            ChessPosition newPosition = new ChessPosition(currentRow, currentCol - 1);
-            if (board.getPiece(newPosition) == null || board.getPiece(newPosition).getTeamColor() != myColor) {
-                kingMoves.add(new ChessMove(myPosition, newPosition, null));
-            }
-        }
-
-        if (currentRow + 1 <= 8 && currentCol + 1 <= 8) {
-            ChessPosition newPosition = new ChessPosition(currentRow + 1, currentCol + 1);
-            if (board.getPiece(newPosition) == null || board.getPiece(newPosition).getTeamColor() != myColor) {
-                kingMoves.add(new ChessMove(myPosition, newPosition, null));
-            }
-        }
-        if (currentRow + 1 <= 8 && currentCol - 1 > 0) {
-            ChessPosition newPosition = new ChessPosition(currentRow + 1, currentCol - 1);
-            if (board.getPiece(newPosition) == null || board.getPiece(newPosition).getTeamColor() != myColor) {
-                kingMoves.add(new ChessMove(myPosition, newPosition, null));
-            }
-        }
-        if (currentRow - 1 >0 && currentCol+1<=8) {
-            ChessPosition newPosition = new ChessPosition(currentRow - 1, currentCol+1);
-            if (board.getPiece(newPosition) == null || board.getPiece(newPosition).getTeamColor() != myColor) {
-                kingMoves.add(new ChessMove(myPosition, newPosition, null));
-            }
-        }
-        if (currentRow - 1 > 0&& currentCol -1>0) {
-            ChessPosition newPosition = new ChessPosition(currentRow - 1, currentCol-1);
-            if (board.getPiece(newPosition) == null || board.getPiece(newPosition).getTeamColor() != myColor) {
-                kingMoves.add(new ChessMove(myPosition, newPosition, null));
-            }
-
-        }
-        return kingMoves;
-    }
-
-    private Collection<ChessMove> getPawnMoves(ChessBoard board, ChessPosition myPosition) {
-        Collection<ChessMove> pawnMoves = new ArrayList<>();
-        int currentRow = myPosition.getRow();
-        int currentCol = myPosition.getColumn();
-        ChessGame.TeamColor myColor = board.getPiece(myPosition).color;
-
-        if (myColor == ChessGame.TeamColor.WHITE) {
-
-            //handles move 2 forward
-            if (currentRow == 2) {
-                ChessPosition newPosition = new ChessPosition(currentRow + 2, currentCol);
-                if (board.getPiece(new ChessPosition(currentRow + 1, currentCol)) == null && board.getPiece(newPosition) == null) {
-                    pawnMoves.add(new ChessMove(myPosition, newPosition, null));
-                }
-            }
-
-            //move 1 forward
-            ChessPosition newPosition = new ChessPosition(currentRow + 1, currentCol);
-            if (currentRow == 7 && board.getPiece(newPosition) == null) {
-                pawnMoves.add(new ChessMove(myPosition, newPosition, PieceType.ROOK));
-                pawnMoves.add(new ChessMove(myPosition, newPosition, PieceType.KNIGHT));
-                pawnMoves.add(new ChessMove(myPosition, newPosition, PieceType.BISHOP));
-                pawnMoves.add(new ChessMove(myPosition, newPosition, PieceType.QUEEN));
-            } else if (board.getPiece(newPosition) == null) {
-                pawnMoves.add(new ChessMove(myPosition, newPosition, null));
-            }
-
-            //handles left capture
-
-            if (currentCol - 1 > 0) {
-                newPosition = new ChessPosition(currentRow + 1, currentCol - 1);
-                if (currentRow == 7 && board.getPiece(newPosition) != null && board.getPiece(newPosition).color != color) {
-                    pawnMoves.add(new ChessMove(myPosition, newPosition, PieceType.ROOK));
-                    pawnMoves.add(new ChessMove(myPosition, newPosition, PieceType.KNIGHT));
-                    pawnMoves.add(new ChessMove(myPosition, newPosition, PieceType.BISHOP));
-                    pawnMoves.add(new ChessMove(myPosition, newPosition, PieceType.QUEEN));
-                } else if (board.getPiece(newPosition) != null && board.getPiece(newPosition).color != color) {
-                    pawnMoves.add(new ChessMove(myPosition, newPosition, null));
-                }
-            }
-
-            //handles right capture
-            if (currentCol + 1 < 9) {
-                newPosition = new ChessPosition(currentRow + 1, currentCol + 1);
-                if (currentRow == 7 && board.getPiece(newPosition) != null && board.getPiece(newPosition).color != color) {
-                    pawnMoves.add(new ChessMove(myPosition, newPosition, PieceType.ROOK));
-                    pawnMoves.add(new ChessMove(myPosition, newPosition, PieceType.KNIGHT));
-                    pawnMoves.add(new ChessMove(myPosition, newPosition, PieceType.BISHOP));
-                    pawnMoves.add(new ChessMove(myPosition, newPosition, PieceType.QUEEN));
-                } else if (board.getPiece(newPosition) != null && board.getPiece(newPosition).color != color) {
-                    pawnMoves.add(new ChessMove(myPosition, newPosition, null));
-                }
-            }
-
-        } else {
-            //Black pieces
-            //move 2 backward
-            if (currentRow == 7) {
-                ChessPosition newPosition = new ChessPosition(currentRow - 2, currentCol);
-                if (board.getPiece(new ChessPosition(currentRow - 1, currentCol)) == null && board.getPiece(newPosition) == null) {
-                    pawnMoves.add(new ChessMove(myPosition, newPosition, null));
-                }
-            }
-
-            //move 1 backward
-            ChessPosition newPosition = new ChessPosition(currentRow - 1, currentCol);
-            if (currentRow == 2 && board.getPiece(newPosition) == null) {
-                pawnMoves.add(new ChessMove(myPosition, newPosition, PieceType.ROOK));
-                pawnMoves.add(new ChessMove(myPosition, newPosition, PieceType.KNIGHT));
-                pawnMoves.add(new ChessMove(myPosition, newPosition, PieceType.BISHOP));
-                pawnMoves.add(new ChessMove(myPosition, newPosition, PieceType.QUEEN));
-            } else if (board.getPiece(newPosition) == null) {
-                pawnMoves.add(new ChessMove(myPosition, newPosition, null));
-            }
-
-            //handles left capture
-            if (currentCol - 1 > 0) {
-                newPosition = new ChessPosition(currentRow - 1, currentCol - 1);
-                if (currentRow == 2 && board.getPiece(newPosition) != null && board.getPiece(newPosition).color != color) {
-                    pawnMoves.add(new ChessMove(myPosition, newPosition, PieceType.ROOK));
-                    pawnMoves.add(new ChessMove(myPosition, newPosition, PieceType.KNIGHT));
-                    pawnMoves.add(new ChessMove(myPosition, newPosition, PieceType.BISHOP));
-                    pawnMoves.add(new ChessMove(myPosition, newPosition, PieceType.QUEEN));
-                } else if (board.getPiece(newPosition) != null && board.getPiece(newPosition).color != color) {
-                    pawnMoves.add(new ChessMove(myPosition, newPosition, null));
-                }
-            }
-
-            //handles right capture
-            if (currentCol + 1 < 9) {
-                newPosition = new ChessPosition(currentRow - 1, currentCol + 1);
-                if (currentRow == 2 && board.getPiece(newPosition) != null && board.getPiece(newPosition).color != color) {
-                    pawnMoves.add(new ChessMove(myPosition, newPosition, PieceType.ROOK));
-                    pawnMoves.add(new ChessMove(myPosition, newPosition, PieceType.KNIGHT));
-                    pawnMoves.add(new ChessMove(myPosition, newPosition, PieceType.BISHOP));
-                    pawnMoves.add(new ChessMove(myPosition, newPosition, PieceType.QUEEN));
-                } else if (board.getPiece(newPosition) != null && board.getPiece(newPosition).color != color) {
-                    pawnMoves.add(new ChessMove(myPosition, newPosition, null));
-                }
-            }
-        }
-        return pawnMoves;
+        MoveList moves = new MoveList();
+        MoveGenerator.generatePieceMoves(board, ChessBoard.square(myPosition), color, pieceType, moves);
+        return moves.toChessMoves();
     }
 
 
@@ -1,7 +1,5 @@
 package chess;
 
-import java.util.Objects;
-
 /**
  * Represents a single square position on a chess board
  * <p>
@@ -9,14 +7,45 @@ import java.util.Objects;
  * signature of the existing methods.
  */
 public class ChessPosition {
-    private int row;
-    private int col;
+    private final int row;
+    private final int col;
+
+    // The 64 on-board positions, indexed by square (0 is row 1 column 1, 63 is row 8 column 8)
+    private static final ChessPosition[] SQUARES = new ChessPosition[64];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            SQUARES[square] = new ChessPosition(square / 8 + 1, square % 8 + 1);
+        }
+    }
 
     public ChessPosition(int row, int col) {
         this.row = row;
         this.col = col;
     }
 
+    /**
+     * Gets the shared instance for a position. Positions never change once built, so move generation
+     * can hand these out instead of allocating a new one for every square it looks at.
+     *
+     * @param row 1 codes for the bottom row
+     * @param col 1 codes for the left column
+     * @return the cached position, or a new one if the coordinates are off the board
+     */
+    public static ChessPosition of(int row, int col) {
+        if (row < 1 || row > 8 || col < 1 || col > 8) {
+            return new ChessPosition(row, col);
+        }
+        return SQUARES[(row - 1) * 8 + (col - 1)];
+    }
+
+    /**
+     * @return the shared position for a square index as used by ChessBoard (0 is a1, 63 is h8)
+     */
+    static ChessPosition ofSquare(int square) {
+        return SQUARES[square];
+    }
+
     /**
      * @return which row this position is in
      * 1 codes for the bottom row
@@ -47,7 +76,8 @@ public class ChessPosition {
 
     @Override
     public int hashCode() {
-        return Objects.hash(row, col);
+        //same value as Objects.hash(row, col) without boxing both ints into a new array
+        return 31 * (31 + row) + col;
     }
 
     @Override
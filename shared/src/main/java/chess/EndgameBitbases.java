@@ -0,0 +1,327 @@
+package chess;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+/**
+ * Exact win/draw results for king and queen, king and rook, and king and pawn against a lone king, solved by
+ * retrograde analysis and kept as one bit per position (64 KB per ending).
+ */
+public class EndgameBitbases {
+
+    /**
+     * Result of {@link #probe} when the side to move wins
+     */
+    public static final int WIN = 1;
+    /**
+     * Result of {@link #probe} when the position is a draw
+     */
+    public static final int DRAW = 0;
+    /**
+     * Result of {@link #probe} when the side to move loses
+     */
+    public static final int LOSS = -1;
+    /**
+     * Result of {@link #probe} for positions these bitbases don't cover
+     */
+    public static final int NOT_COVERED = Integer.MIN_VALUE;
+
+    // Index bits: 0 strong side to move, 1-6 strong king, 7-12 weak king, 13-18 the strong side's other piece
+    private static final int POSITIONS = 1 << 19;
+    private static final int WORDS = POSITIONS / 64;
+
+    // Classification states while solving
+    private static final byte UNKNOWN = 0;
+    private static final byte WON = 1;
+    private static final byte DRAWN = 2;
+    private static final byte INVALID = 3;
+
+    private static final ChessPiece.PieceType[] SOLVED = {
+            ChessPiece.PieceType.QUEEN, ChessPiece.PieceType.ROOK, ChessPiece.PieceType.PAWN};
+
+    // Indexed by PieceType ordinal; null for the types that aren't solved
+    private final long[][] wins = new long[6][];
+
+    private EndgameBitbases() {
+    }
+
+    /**
+     * Solves every ending, using all available cores
+     */
+    public static EndgameBitbases build() {
+        EndgameBitbases bitbases = new EndgameBitbases();
+        //the pawn ending needs the other two for its promotions, so it goes last
+        for (ChessPiece.PieceType type : SOLVED) {
+            bitbases.wins[type.ordinal()] = bitbases.solve(type);
+        }
+        return bitbases;
+    }
+
+    /**
+     * Reads the bitbases from a file written by {@link #save}, or solves them and writes the file if it
+     * doesn't exist yet or doesn't hold bitbases
+     */
+    public static EndgameBitbases loadOrBuild(Path file) throws IOException {
+        if (Files.isRegularFile(file) && Files.size(file) == (long) SOLVED.length * WORDS * Long.BYTES) {
+            EndgameBitbases bitbases = new EndgameBitbases();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                for (ChessPiece.PieceType type : SOLVED) {
+                    long[] words = new long[WORDS];
+                    for (int i = 0; i < WORDS; i++) {
+                        words[i] = in.readLong();
+                    }
+                    bitbases.wins[type.ordinal()] = words;
+                }
+            }
+            return bitbases;
+        }
+        EndgameBitbases bitbases = build();
+        bitbases.save(file);
+        return bitbases;
+    }
+
+    /**
+     * Writes the bitbases to a file that {@link #loadOrBuild} can read back
+     */
+    public void save(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            for (ChessPiece.PieceType type : SOLVED) {
+                for (long word : wins[type.ordinal()]) {
+                    out.writeLong(word);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return bitbases shared by the whole process, waiting for them to be solved if they aren't yet
+     */
+    public static EndgameBitbases shared() {
+        return Shared.BUILD.join();
+    }
+
+    /**
+     * Gets the bitbases shared by the whole process without waiting for them. The first call starts solving
+     * them on a background thread.
+     *
+     * @return the shared bitbases, or null while they are still being solved
+     */
+    public static EndgameBitbases sharedIfReady() {
+        return Shared.BUILD.getNow(null);
+    }
+
+    /**
+     * Looks up the exact result of a position with a king on each side and one other piece
+     *
+     * @param board  the position
+     * @param toMove the team to move
+     * @return {@link #WIN}, {@link #DRAW} or {@link #LOSS} for the team to move, or {@link #NOT_COVERED}
+     */
+    public int probe(ChessBoard board, ChessGame.TeamColor toMove) {
+        long occupied = board.occupied();
+        long whiteKing = board.pieces(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING);
+        long blackKing = board.pieces(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING);
+        //set-up boards can lack a king or have two; the tables only know one of each
+        if (Long.bitCount(occupied) != 3 || Long.bitCount(whiteKing) != 1 || Long.bitCount(blackKing) != 1) {
+            return NOT_COVERED;
+        }
+        long kings = whiteKing | blackKing;
+        int piece = Long.numberOfTrailingZeros(occupied & ~kings);
+        int pieceIndex = board.pieceIndexAt(piece);
+        long[] table = wins[pieceIndex % 6];
+        if (table == null) {
+            //a lone bishop or knight can never mate
+            return DRAW;
+        }
+
+        ChessGame.TeamColor strong = ChessBoard.pieceFor(pieceIndex).getTeamColor();
+        int strongKing = board.kingSquare(strong);
+        int weakKing = board.kingSquare(strong.opponent());
+        //the tables are solved with the strong side as white; flip the board for black
+        if (strong == ChessGame.TeamColor.BLACK) {
+            strongKing ^= 56;
+            weakKing ^= 56;
+            piece ^= 56;
+        }
+        boolean strongToMove = toMove == strong;
+        int index = index(strongToMove ? 1 : 0, strongKing, weakKing, piece);
+        if ((table[index >>> 6] & 1L << index) == 0) {
+            return DRAW;
+        }
+        return strongToMove ? WIN : LOSS;
+    }
+
+    // Mates are wins and stalemates draws; a win spreads back to any position the strong side can move into it
+    // from, a draw to any where the weak king can reach it, and whatever stays unknown can't be forced
+    private long[] solve(ChessPiece.PieceType type) {
+        byte[] states = new byte[POSITIONS];
+        IntStream.range(0, POSITIONS).parallel().forEach(index -> states[index] = initialState(type, index));
+
+        AtomicBoolean changed = new AtomicBoolean(true);
+        while (changed.get()) {
+            changed.set(false);
+            //results only ever go from unknown to known, so seeing a neighbour's old state just delays a
+            //position to the next pass and every order of evaluation ends in the same place
+            IntStream.range(0, POSITIONS).parallel().forEach(index -> {
+                if (states[index] == UNKNOWN) {
+                    byte state = classify(type, states, index);
+                    if (state != UNKNOWN) {
+                        states[index] = state;
+                        changed.set(true);
+                    }
+                }
+            });
+        }
+
+        long[] words = new long[WORDS];
+        for (int index = 0; index < POSITIONS; index++) {
+            if (states[index] == WON) {
+                words[index >>> 6] |= 1L << index;
+            }
+        }
+        return words;
+    }
+
+    private static byte initialState(ChessPiece.PieceType type, int index) {
+        int strongToMove = index & 1;
+        int strongKing = index >>> 1 & 0x3F;
+        int weakKing = index >>> 7 & 0x3F;
+        int piece = index >>> 13 & 0x3F;
+        if (strongKing == weakKing || strongKing == piece || weakKing == piece
+                || (AttackTables.kingAttacks(strongKing) & 1L << weakKing) != 0) {
+            return INVALID;
+        }
+        if (type == ChessPiece.PieceType.PAWN && (piece < 8 || piece >= 56)) {
+            return INVALID;
+        }
+        long occupied = 1L << strongKing | 1L << weakKing | 1L << piece;
+        //the weak king can't be in check when it isn't its turn
+        if (strongToMove == 1 && (pieceAttacks(type, piece, occupied) & 1L << weakKing) != 0) {
+            return INVALID;
+        }
+        return UNKNOWN;
+    }
+
+    // Works out a position's result from its successors, or UNKNOWN if some of those aren't known yet
+    private byte classify(ChessPiece.PieceType type, byte[] states, int index) {
+        int strongKing = index >>> 1 & 0x3F;
+        int weakKing = index >>> 7 & 0x3F;
+        int piece = index >>> 13 & 0x3F;
+        long occupied = 1L << strongKing | 1L << weakKing | 1L << piece;
+        boolean unknown = false;
+
+        if ((index & 1) == 1) {
+            //the strong side wins if any move wins, and draws once every move is known to draw
+            long kingTargets = AttackTables.kingAttacks(strongKing)
+                    & ~AttackTables.kingAttacks(weakKing) & ~(1L << piece);
+            while (kingTargets != 0) {
+                int to = Long.numberOfTrailingZeros(kingTargets);
+                kingTargets &= kingTargets - 1;
+                byte state = states[index(0, to, weakKing, piece)];
+                if (state == WON) {
+                    return WON;
+                }
+                unknown |= state == UNKNOWN;
+            }
+            if (type == ChessPiece.PieceType.PAWN) {
+                int push = piece + 8;
+                if ((occupied & 1L << push) == 0) {
+                    if (push >= 56) {
+                        if (promotionWins(strongKing, weakKing, push)) {
+                            return WON;
+                        }
+                    } else {
+                        byte state = states[index(0, strongKing, weakKing, push)];
+                        if (state == WON) {
+                            return WON;
+                        }
+                        unknown |= state == UNKNOWN;
+                        if (piece < 16 && (occupied & 1L << (push + 8)) == 0) {
+                            state = states[index(0, strongKing, weakKing, push + 8)];
+                            if (state == WON) {
+                                return WON;
+                            }
+                            unknown |= state == UNKNOWN;
+                        }
+                    }
+                }
+            } else {
+                long pieceTargets = pieceAttacks(type, piece, occupied) & ~occupied;
+                while (pieceTargets != 0) {
+                    int to = Long.numberOfTrailingZeros(pieceTargets);
+                    pieceTargets &= pieceTargets - 1;
+                    byte state = states[index(0, strongKing, weakKing, to)];
+                    if (state == WON) {
+                        return WON;
+                    }
+                    unknown |= state == UNKNOWN;
+                }
+            }
+            return unknown ? UNKNOWN : DRAWN;
+        }
+
+        //the weak king draws if any move draws, and loses once every move is known to lose.
+        //It can't step back along a slider's ray, so the slider's attacks are worked out without it.
+        long attacked = AttackTables.kingAttacks(strongKing)
+                | pieceAttacks(type, piece, occupied & ~(1L << weakKing));
+        long targets = AttackTables.kingAttacks(weakKing) & ~attacked;
+        if (targets == 0) {
+            //checkmate or stalemate
+            return (attacked & 1L << weakKing) != 0 ? WON : DRAWN;
+        }
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            if (to == piece) {
+                //the piece was undefended, and a king alone can't lose
+                return DRAWN;
+            }
+            byte state = states[index(1, strongKing, to, piece)];
+            if (state == DRAWN) {
+                return DRAWN;
+            }
+            unknown |= state == UNKNOWN;
+        }
+        return unknown ? UNKNOWN : WON;
+    }
+
+    // A pawn that promotes wins if it wins as a queen or, when the queen would stalemate, as a rook
+    private boolean promotionWins(int strongKing, int weakKing, int square) {
+        int index = index(0, strongKing, weakKing, square);
+        return (wins[ChessPiece.PieceType.QUEEN.ordinal()][index >>> 6] & 1L << index) != 0
+                || (wins[ChessPiece.PieceType.ROOK.ordinal()][index >>> 6] & 1L << index) != 0;
+    }
+
+    // Squares the strong side's extra piece attacks
+    private static long pieceAttacks(ChessPiece.PieceType type, int square, long occupied) {
+        return switch (type) {
+            case QUEEN -> AttackTables.queenAttacks(square, occupied);
+            case ROOK -> AttackTables.rookAttacks(square, occupied);
+            case PAWN -> AttackTables.pawnAttacks(ChessGame.TeamColor.WHITE, square);
+            default -> throw new IllegalArgumentException("No bitbase for " + type);
+        };
+    }
+
+    private static int index(int strongToMove, int strongKing, int weakKing, int piece) {
+        return strongToMove | strongKing << 1 | weakKing << 7 | piece << 13;
+    }
+
+    // Started the first time shared() or sharedIfReady() is called, on a daemon thread so it never keeps the
+    // process alive
+    private static final class Shared {
+        private static final CompletableFuture<EndgameBitbases> BUILD = CompletableFuture.supplyAsync(
+                EndgameBitbases::build, task -> {
+                    Thread thread = new Thread(task, "endgame-bitbases");
+                    thread.setDaemon(true);
+                    thread.start();
+                });
+    }
+}
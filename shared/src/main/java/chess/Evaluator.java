@@ -0,0 +1,155 @@
+package chess;
+
+/**
+ * Static evaluation used by the search: material plus piece-square bonuses, in centipawns.
+ * <p>
+ * The piece-square tables are the widely used "simplified evaluation function" tables. They are written as
+ * you would see the board from white's side (row 8 first), and mirrored for black. The king blends between a
+ * middlegame table (stay sheltered) and an endgame table (head for the center) as the pieces come off.
+ */
+final class Evaluator {
+
+    // Indexed by PieceType ordinal: KING, QUEEN, BISHOP, KNIGHT, ROOK, PAWN
+    static final int[] PIECE_VALUES = {0, 900, 330, 320, 500, 100};
+
+    // How much each piece type counts toward the middlegame phase; 24 is a full set of pieces
+    private static final int[] PHASE_WEIGHTS = {0, 4, 1, 1, 2, 0};
+    private static final int FULL_PHASE = 24;
+
+    /**
+     * Score for a position known to be won, before adding anything that measures progress toward the mate
+     */
+    static final int KNOWN_WIN = 10000;
+
+    private static final int[] PAWN_TABLE = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            10, 10, 20, 30, 30, 20, 10, 10,
+            5, 5, 10, 25, 25, 10, 5, 5,
+            0, 0, 0, 20, 20, 0, 0, 0,
+            5, -5, -10, 0, 0, -10, -5, 5,
+            5, 10, 10, -20, -20, 10, 10, 5,
+            0, 0, 0, 0, 0, 0, 0, 0
+    };
+    private static final int[] KNIGHT_TABLE = {
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            -40, -20, 0, 0, 0, 0, -20, -40,
+            -30, 0, 10, 15, 15, 10, 0, -30,
+            -30, 5, 15, 20, 20, 15, 5, -30,
+            -30, 0, 15, 20, 20, 15, 0, -30,
+            -30, 5, 10, 15, 15, 10, 5, -30,
+            -40, -20, 0, 5, 5, 0, -20, -40,
+            -50, -40, -30, -30, -30, -30, -40, -50
+    };
+    private static final int[] BISHOP_TABLE = {
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 10, 10, 5, 0, -10,
+            -10, 5, 5, 10, 10, 5, 5, -10,
+            -10, 0, 10, 10, 10, 10, 0, -10,
+            -10, 10, 10, 10, 10, 10, 10, -10,
+            -10, 5, 0, 0, 0, 0, 5, -10,
+            -20, -10, -10, -10, -10, -10, -10, -20
+    };
+    private static final int[] ROOK_TABLE = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            5, 10, 10, 10, 10, 10, 10, 5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            0, 0, 0, 5, 5, 0, 0, 0
+    };
+    private static final int[] QUEEN_TABLE = {
+            -20, -10, -10, -5, -5, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 5, 5, 5, 0, -10,
+            -5, 0, 5, 5, 5, 5, 0, -5,
+            0, 0, 5, 5, 5, 5, 0, -5,
+            -10, 5, 5, 5, 5, 5, 0, -10,
+            -10, 0, 5, 0, 0, 0, 0, -10,
+            -20, -10, -10, -5, -5, -10, -10, -20
+    };
+    private static final int[] KING_MIDDLE_TABLE = {
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -20, -30, -30, -40, -40, -30, -30, -20,
+            -10, -20, -20, -20, -20, -20, -20, -10,
+            20, 20, 0, 0, 0, 0, 20, 20,
+            20, 30, 10, 0, 0, 10, 30, 20
+    };
+    private static final int[] KING_END_TABLE = {
+            -50, -40, -30, -20, -20, -30, -40, -50,
+            -30, -20, -10, 0, 0, -10, -20, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -30, 0, 0, 0, 0, -30, -30,
+            -50, -30, -30, -30, -30, -30, -30, -50
+    };
+
+    // Indexed by PieceType ordinal; the king's entry is handled separately because it depends on the phase
+    private static final int[][] TABLES = {null, QUEEN_TABLE, BISHOP_TABLE, KNIGHT_TABLE, ROOK_TABLE, PAWN_TABLE};
+
+    private Evaluator() {
+    }
+
+    /**
+     * @return the position's score in centipawns from the point of view of the side to move
+     */
+    static int evaluate(ChessBoard board, ChessGame.TeamColor sideToMove) {
+        int score = 0;
+        int phase = 0;
+        for (int color = 0; color < 2; color++) {
+            int sign = color == 0 ? 1 : -1;
+            for (int type = 1; type < 6; type++) {
+                long mask = board.pieces(color * 6 + type);
+                phase += PHASE_WEIGHTS[type] * Long.bitCount(mask);
+                while (mask != 0) {
+                    int square = Long.numberOfTrailingZeros(mask);
+                    mask &= mask - 1;
+                    score += sign * (PIECE_VALUES[type] + TABLES[type][tableIndex(square, color)]);
+                }
+            }
+        }
+
+        phase = Math.min(phase, FULL_PHASE);
+        for (int color = 0; color < 2; color++) {
+            long king = board.pieces(color * 6);
+            if (king != 0) {
+                int index = tableIndex(Long.numberOfTrailingZeros(king), color);
+                int kingScore = (KING_MIDDLE_TABLE[index] * phase + KING_END_TABLE[index] * (FULL_PHASE - phase))
+                        / FULL_PHASE;
+                score += color == 0 ? kingScore : -kingScore;
+            }
+        }
+        return sideToMove == ChessGame.TeamColor.WHITE ? score : -score;
+    }
+
+    /**
+     * Scores a position the winner is known to win. Material and piece-square bonuses still count, plus a bonus
+     * for driving the losing king to the edge and bringing the winning king close, so the search makes progress.
+     *
+     * @return the score from the winner's point of view
+     */
+    static int knownWin(ChessBoard board, ChessGame.TeamColor winner) {
+        int winnerKing = board.kingSquare(winner);
+        int loserKing = board.kingSquare(winner.opponent());
+        int loserRow = loserKing / 8;
+        int loserCol = loserKing % 8;
+        int edgeBonus = Math.max(3 - loserRow, loserRow - 4) + Math.max(3 - loserCol, loserCol - 4);
+        int kingDistance = Math.abs(winnerKing / 8 - loserRow) + Math.abs(winnerKing % 8 - loserCol);
+        return KNOWN_WIN + evaluate(board, winner) + 10 * edgeBonus + 4 * (14 - kingDistance);
+    }
+
+    // Tables are laid out row 8 first from white's side; black reads them upside down
+    private static int tableIndex(int square, int color) {
+        int row = square / 8;
+        int col = square % 8;
+        return color == 0 ? (7 - row) * 8 + col : row * 8 + col;
+    }
+}
@@ -0,0 +1,319 @@
+package chess;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads and writes positions in Forsyth-Edwards Notation, e.g.
+ * {@code rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1}. The move counters may be left off, as in EPD.
+ */
+public final class Fen {
+
+    /**
+     * The standard starting position
+     */
+    public static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    // Letters for each piece index: white KING, QUEEN, BISHOP, KNIGHT, ROOK, PAWN, then black
+    private static final String PIECE_LETTERS = "KQBNRPkqbnrp";
+    private static final String CASTLING_LETTERS = "KQkq";
+    // Piece index for each ASCII letter, or -1
+    private static final byte[] PIECE_INDEX = new byte[128];
+
+    static {
+        Arrays.fill(PIECE_INDEX, (byte) -1);
+        for (int index = 0; index < PIECE_LETTERS.length(); index++) {
+            PIECE_INDEX[PIECE_LETTERS.charAt(index)] = (byte) index;
+        }
+    }
+
+    // Lets byte input go through the same parser without copying it into a String
+    private static final ThreadLocal<AsciiView> ASCII = ThreadLocal.withInitial(AsciiView::new);
+    // A board for each thread to parse into, so an invalid FEN leaves the game as it was
+    private static final ThreadLocal<ChessBoard> LOADING = ThreadLocal.withInitial(ChessBoard::new);
+
+    private Fen() {
+    }
+
+    /**
+     * @return a new game in the position the FEN describes
+     * @throws IllegalArgumentException if the text isn't a valid FEN
+     */
+    public static ChessGame parse(CharSequence fen) {
+        ChessGame game = new ChessGame();
+        load(fen, 0, fen.length(), game);
+        return game;
+    }
+
+    /**
+     * Sets a game up in the position a FEN describes, as one change. The game's board is refilled in place
+     * and its move history is dropped.
+     *
+     * @throws IllegalArgumentException if the text isn't a valid FEN; the game is then left as it was
+     */
+    public static void load(CharSequence fen, ChessGame game) {
+        load(fen, 0, fen.length(), game);
+    }
+
+    /**
+     * Sets a game up from the FEN between start (inclusive) and end (exclusive), e.g. one line of a larger
+     * buffer
+     *
+     * @throws IllegalArgumentException if the text isn't a valid FEN
+     */
+    public static void load(CharSequence text, int start, int end, ChessGame game) {
+        ChessBoard board = LOADING.get();
+        int i = loadBoard(text, start, end, board);
+
+        i = skipSpace(text, i, end, start);
+        ChessGame.TeamColor teamTurn;
+        if (text.charAt(i) == 'w') {
+            teamTurn = ChessGame.TeamColor.WHITE;
+        } else if (text.charAt(i) == 'b') {
+            teamTurn = ChessGame.TeamColor.BLACK;
+        } else {
+            throw invalid(text, start, end, "the team to move must be 'w' or 'b'");
+        }
+        i++;
+
+        i = skipSpace(text, i, end, start);
+        int castlingRights = 0;
+        if (text.charAt(i) == '-') {
+            i++;
+        } else {
+            for (; i < end && !Character.isWhitespace(text.charAt(i)); i++) {
+                int right = CASTLING_LETTERS.indexOf(text.charAt(i));
+                if (right < 0) {
+                    throw invalid(text, start, end, "unknown castling right '" + text.charAt(i) + "'");
+                }
+                castlingRights |= 1 << right;
+            }
+        }
+
+        i = skipSpace(text, i, end, start);
+        int enPassantSquare = -1;
+        if (text.charAt(i) == '-') {
+            i++;
+        } else {
+            //the square a pawn just skipped is on row 3 when black is to move and row 6 when white is
+            char expectedRow = teamTurn == ChessGame.TeamColor.WHITE ? '6' : '3';
+            if (i + 1 >= end || text.charAt(i) < 'a' || text.charAt(i) > 'h' || text.charAt(i + 1) != expectedRow) {
+                throw invalid(text, start, end, "bad en passant square");
+            }
+            enPassantSquare = (expectedRow - '1') * 8 + text.charAt(i) - 'a';
+            i += 2;
+        }
+
+        //the move counters are optional
+        int halfmoveClock = 0;
+        int fullmoveNumber = 1;
+        i = skipOptionalSpace(text, i, end);
+        if (i < end) {
+            int digits = i;
+            for (; i < end && text.charAt(i) >= '0' && text.charAt(i) <= '9'; i++) {
+                halfmoveClock = halfmoveClock * 10 + text.charAt(i) - '0';
+            }
+            if (i == digits || i - digits > 5) {
+                throw invalid(text, start, end, "bad halfmove clock");
+            }
+            i = skipSpace(text, i, end, start);
+            digits = i;
+            fullmoveNumber = 0;
+            for (; i < end && text.charAt(i) >= '0' && text.charAt(i) <= '9'; i++) {
+                fullmoveNumber = fullmoveNumber * 10 + text.charAt(i) - '0';
+            }
+            if (i == digits || i - digits > 5) {
+                throw invalid(text, start, end, "bad fullmove number");
+            }
+            if (skipOptionalSpace(text, i, end) < end) {
+                throw invalid(text, start, end, "unexpected text after the fullmove number");
+            }
+        }
+        game.setPosition(board, teamTurn, castlingRights, enPassantSquare, halfmoveClock, fullmoveNumber);
+    }
+
+    /**
+     * Fills a board from the piece placement field of a FEN, e.g.
+     * {@code rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR}. The board is emptied first.
+     *
+     * @throws IllegalArgumentException if the text isn't a valid placement
+     */
+    public static void loadBoard(CharSequence placement, ChessBoard board) {
+        int end = placement.length();
+        if (loadBoard(placement, 0, end, board) != end) {
+            throw invalid(placement, 0, end, "unexpected text after the board");
+        }
+    }
+
+    // Reads the placement field starting at start; returns the index just after it
+    private static int loadBoard(CharSequence text, int start, int end, ChessBoard board) {
+        board.clear();
+        int i = start;
+        int row = 7;
+        int col = 0;
+        for (; i < end && !Character.isWhitespace(text.charAt(i)); i++) {
+            char c = text.charAt(i);
+            if (c == '/') {
+                if (col != 8 || row == 0) {
+                    throw invalid(text, start, end, "row " + (row + 1) + " doesn't have 8 squares");
+                }
+                row--;
+                col = 0;
+            } else if (c >= '1' && c <= '8') {
+                col += c - '0';
+            } else {
+                int index = c < 128 ? PIECE_INDEX[c] : -1;
+                if (index < 0) {
+                    throw invalid(text, start, end, "unknown piece '" + c + "'");
+                }
+                if (col > 7) {
+                    throw invalid(text, start, end, "row " + (row + 1) + " has more than 8 squares");
+                }
+                board.placePiece(row * 8 + col, index);
+                col++;
+            }
+            if (col > 8) {
+                throw invalid(text, start, end, "row " + (row + 1) + " has more than 8 squares");
+            }
+        }
+        if (row != 0 || col != 8) {
+            throw invalid(text, start, end, "the board doesn't have 8 rows of 8 squares");
+        }
+        return i;
+    }
+
+    /**
+     * Sets a game up from a FEN held as ASCII bytes, e.g. one line of a memory-mapped dataset
+     *
+     * @throws IllegalArgumentException if the bytes aren't a valid FEN
+     */
+    public static void load(byte[] ascii, int offset, int length, ChessGame game) {
+        AsciiView view = ASCII.get();
+        view.bytes = ascii;
+        view.offset = offset;
+        view.length = length;
+        try {
+            load(view, 0, length, game);
+        } finally {
+            view.bytes = null;
+        }
+    }
+
+    /**
+     * @return the game's current position as a FEN
+     */
+    public static String toFen(ChessGame game) {
+        StringBuilder out = new StringBuilder(90);
+        append(game, out);
+        return out.toString();
+    }
+
+    /**
+     * Writes the game's current position as a FEN to the end of a builder, so many positions can be written
+     * through one builder
+     */
+    public static void append(ChessGame game, StringBuilder out) {
+        appendBoard(game.getBoard(), out);
+        out.append(game.getTeamTurn() == ChessGame.TeamColor.WHITE ? " w " : " b ");
+        int castlingRights = game.getCastlingRights();
+        if (castlingRights == 0) {
+            out.append('-');
+        }
+        for (int right = 0; right < 4; right++) {
+            if ((castlingRights & 1 << right) != 0) {
+                out.append(CASTLING_LETTERS.charAt(right));
+            }
+        }
+        ChessPosition enPassant = game.getEnPassantSquare();
+        if (enPassant == null) {
+            out.append(" -");
+        } else {
+            out.append(' ').append((char) ('a' + enPassant.getColumn() - 1)).append(enPassant.getRow());
+        }
+        out.append(' ').append(game.getHalfmoveClock()).append(' ').append(game.getFullmoveNumber());
+    }
+
+    /**
+     * Writes the piece placement field of a FEN for the board to the end of a builder
+     */
+    public static void appendBoard(ChessBoard board, StringBuilder out) {
+        for (int row = 7; row >= 0; row--) {
+            int empty = 0;
+            for (int col = 0; col < 8; col++) {
+                int index = board.pieceIndexAt(row * 8 + col);
+                if (index < 0) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    out.append((char) ('0' + empty));
+                    empty = 0;
+                }
+                out.append(PIECE_LETTERS.charAt(index));
+            }
+            if (empty > 0) {
+                out.append((char) ('0' + empty));
+            }
+            if (row > 0) {
+                out.append('/');
+            }
+        }
+    }
+
+    // The FEN letter for a piece index, e.g. 'K' for the white king
+    static char pieceLetter(int index) {
+        return PIECE_LETTERS.charAt(index);
+    }
+
+    // The piece index for a FEN letter, or -1 if it isn't one
+    static int pieceIndex(char letter) {
+        return letter < 128 ? PIECE_INDEX[letter] : -1;
+    }
+
+    // Skips the spaces between two fields, failing if there are none or the text ends
+    private static int skipSpace(CharSequence text, int i, int end, int start) {
+        int next = skipOptionalSpace(text, i, end);
+        if (next == i || next == end) {
+            throw invalid(text, start, end, "missing field");
+        }
+        return next;
+    }
+
+    private static int skipOptionalSpace(CharSequence text, int i, int end) {
+        while (i < end && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static IllegalArgumentException invalid(CharSequence text, int start, int end, String reason) {
+        return new IllegalArgumentException("Invalid FEN '" + text.subSequence(start, end) + "': " + reason);
+    }
+
+    // A reusable window onto ASCII bytes, read as characters
+    private static final class AsciiView implements CharSequence {
+        private byte[] bytes;
+        private int offset;
+        private int length;
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes[offset + index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(bytes, offset + start, end - start, StandardCharsets.ISO_8859_1);
+        }
+
+        @Override
+        public String toString() {
+            return subSequence(0, length).toString();
+        }
+    }
+}
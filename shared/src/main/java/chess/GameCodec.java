@@ -0,0 +1,240 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * A compact binary form of a game's position, about a tenth of the size of its JSON.
+ * Version 2 adds the move history and checkpoints, so repetitions still count after a round trip.
+ */
+public final class GameCodec {
+
+    /**
+     * The format version written as the first byte of a position on its own
+     */
+    public static final int VERSION = 1;
+    /**
+     * The format version written as the first byte of a game with a move history
+     */
+    public static final int HISTORY_VERSION = 2;
+    /**
+     * The most bytes an encoded position can take
+     */
+    public static final int MAX_BYTES = 1 + 32 + 2 + 5 + 5;
+
+    //version byte, then 4 bits a square from a1 (0 empty, else piece index + 1), then the turn in bit 0 and
+    //castling in bits 1-4, en passant file + 1, and the two move counters as 7-bit varints
+    private static final int BOARD_OFFSET = 1;
+    private static final int STATE_OFFSET = BOARD_OFFSET + 32;
+
+    // A game for each thread to decode into, so bytes that turn out to be bad leave the target game as it was
+    private static final ThreadLocal<ChessGame> LOADING = ThreadLocal.withInitial(ChessGame::new);
+
+    private GameCodec() {
+    }
+
+    /**
+     * @return the game's position and move history in the compact binary form
+     */
+    public static byte[] encode(ChessGame game) {
+        int moves = game.getHistoryLength();
+        int count = game.getCheckpointCount();
+        byte[] buffer = new byte[moves == 0 ? MAX_BYTES : MAX_BYTES + 15 + 2 * moves + count * (5 + MAX_BYTES)];
+        int length = encode(game, buffer, 0);
+        if (moves > 0) {
+            buffer[0] = (byte) HISTORY_VERSION;
+            length = writeVarint(buffer, length, moves);
+            length = writeVarint(buffer, length, game.getCurrentPly());
+            for (int ply = 0; ply < moves; ply++) {
+                int code = game.getHistoryCode(ply);
+                buffer[length++] = (byte) code;
+                buffer[length++] = (byte) (code >>> 8);
+            }
+            length = writeVarint(buffer, length, count);
+            ChessGame checkpoint = new ChessGame();
+            for (int i = 0; i < count; i++) {
+                length = writeVarint(buffer, length, game.getCheckpointPly(i));
+                game.copyCheckpoint(i, checkpoint);
+                length += encode(checkpoint, buffer, length);
+            }
+        }
+        return length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * Writes the game's position, without its move history, into an existing array, so a caller writing many
+     * positions can reuse one buffer
+     *
+     * @param out    where to write, with at least {@link #MAX_BYTES} bytes free after offset
+     * @param offset where the encoding starts
+     * @return how many bytes were written
+     */
+    public static int encode(ChessGame game, byte[] out, int offset) {
+        ChessPosition enPassant = game.getEnPassantSquare();
+        return encode(game.getBoard(), game.getTeamTurn(), game.getCastlingRights(),
+                enPassant == null ? -1 : ChessBoard.square(enPassant), game.getHalfmoveClock(),
+                game.getFullmoveNumber(), out, offset);
+    }
+
+    // Writes a position given as a board and the rules state
+    static int encode(ChessBoard board, ChessGame.TeamColor teamTurn, int castlingRights, int enPassantSquare,
+                      int halfmoveClock, int fullmoveNumber, byte[] out, int offset) {
+        out[offset] = (byte) VERSION;
+        Arrays.fill(out, offset + BOARD_OFFSET, offset + STATE_OFFSET, (byte) 0);
+        for (int index = 0; index < 12; index++) {
+            long mask = board.pieces(index);
+            while (mask != 0) {
+                int square = Long.numberOfTrailingZeros(mask);
+                mask &= mask - 1;
+                out[offset + BOARD_OFFSET + square / 2] |= (byte) ((index + 1) << 4 * (square & 1));
+            }
+        }
+
+        int state = (teamTurn == ChessGame.TeamColor.BLACK ? 1 : 0) | castlingRights << 1;
+        out[offset + STATE_OFFSET] = (byte) state;
+        out[offset + STATE_OFFSET + 1] = (byte) (enPassantSquare < 0 ? 0 : (enPassantSquare & 7) + 1);
+        int end = writeVarint(out, offset + STATE_OFFSET + 2, halfmoveClock);
+        end = writeVarint(out, end, fullmoveNumber);
+        return end - offset;
+    }
+
+    /**
+     * @return a new game in the position the bytes describe, with the move history if they have one
+     * @throws IllegalArgumentException if the bytes aren't an encoded game
+     */
+    public static ChessGame decode(byte[] data) {
+        ChessGame game = new ChessGame();
+        decode(data, 0, data.length, game);
+        return game;
+    }
+
+    /**
+     * Sets a game up in the position encoded in part of an array, as one change. The game's board is refilled in
+     * place and its move history is replaced by the encoded one, or dropped if there is none.
+     *
+     * @return how many bytes the encoding took up
+     * @throws IllegalArgumentException if the bytes aren't an encoded game; the game is then left as it was
+     */
+    public static int decode(byte[] data, int offset, int length, ChessGame game) {
+        ChessGame loaded = LOADING.get();
+        int position = offset + readPosition(data, offset, length, loaded);
+        if (data[offset] == HISTORY_VERSION) {
+            position = decodeHistory(data, position, offset + length, loaded);
+        }
+        game.load(loaded);
+        return position - offset;
+    }
+
+    // Reads a position without its history into a game no other thread is using, or one whose write lock is
+    // held, refilling its board in place; returns how many bytes it took up
+    static int readPosition(byte[] data, int offset, int length, ChessGame game) {
+        int end = offset + length;
+        if (length < STATE_OFFSET + 4) {
+            throw new IllegalArgumentException("An encoded game needs at least " + (STATE_OFFSET + 4)
+                    + " bytes, got " + length);
+        }
+        int version = data[offset];
+        if (version != VERSION && version != HISTORY_VERSION) {
+            throw new IllegalArgumentException("Unknown encoded game version " + version);
+        }
+        ChessBoard board = game.getBoard();
+        board.clear();
+        for (int square = 0; square < 64; square++) {
+            int code = data[offset + BOARD_OFFSET + square / 2] >>> 4 * (square & 1) & 0xF;
+            if (code > 12) {
+                throw new IllegalArgumentException("Bad piece code " + code + " for square " + square);
+            }
+            if (code != 0) {
+                board.placePiece(square, code - 1);
+            }
+        }
+
+        int state = data[offset + STATE_OFFSET];
+        ChessGame.TeamColor teamTurn = (state & 1) == 0 ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+        int file = data[offset + STATE_OFFSET + 1];
+        if (file < 0 || file > 8) {
+            throw new IllegalArgumentException("Bad en passant file " + file);
+        }
+        //the pawn that can be taken en passant skipped row 6 if white is to move and row 3 if black is
+        int enPassantSquare = file == 0 ? -1 : (teamTurn == ChessGame.TeamColor.WHITE ? 40 : 16) + file - 1;
+
+        int position = offset + STATE_OFFSET + 2;
+        int halfmoveClock = readVarint(data, position, end, "halfmove clock");
+        position = varintEnd(data, position);
+        int fullmoveNumber = readVarint(data, position, end, "fullmove number");
+        position = varintEnd(data, position);
+        game.loadPosition(teamTurn, state >>> 1 & 0xF, enPassantSquare, halfmoveClock, fullmoveNumber);
+        return position - offset;
+    }
+
+    // Reads the move history that follows a version 2 position and hands it to the game; returns the index
+    // after it
+    private static int decodeHistory(byte[] data, int position, int end, ChessGame game) {
+        int length = readVarint(data, position, end, "history length");
+        position = varintEnd(data, position);
+        int ply = readVarint(data, position, end, "current ply");
+        position = varintEnd(data, position);
+        if (end - position < 2L * length) {
+            throw new IllegalArgumentException("Truncated move history");
+        }
+        char[] moves = new char[length];
+        for (int i = 0; i < length; i++) {
+            moves[i] = (char) (data[position] & 0xFF | (data[position + 1] & 0xFF) << 8);
+            position += 2;
+        }
+        int count = readVarint(data, position, end, "checkpoint count");
+        position = varintEnd(data, position);
+        //a checkpoint takes more than one byte, which also keeps a bad count from allocating much
+        if (count > end - position) {
+            throw new IllegalArgumentException("Truncated checkpoints");
+        }
+        int[] plies = new int[count];
+        ChessGame[] checkpoints = new ChessGame[count];
+        for (int i = 0; i < count; i++) {
+            plies[i] = readVarint(data, position, end, "checkpoint ply");
+            position = varintEnd(data, position);
+            if (position >= end || data[position] != VERSION) {
+                throw new IllegalArgumentException("Bad checkpoint " + i);
+            }
+            checkpoints[i] = new ChessGame();
+            position += readPosition(data, position, end - position, checkpoints[i]);
+        }
+        game.restoreHistory(moves, length, ply, plies, checkpoints);
+        return position;
+    }
+
+    // Reads a value written by writeVarint, checking it fits in an int and doesn't run past end
+    private static int readVarint(byte[] data, int position, int end, String field) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (position >= end || shift > 28) {
+                throw new IllegalArgumentException("Truncated or bad " + field);
+            }
+            int b = data[position++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                if (value < 0) {
+                    throw new IllegalArgumentException("Bad " + field);
+                }
+                return value;
+            }
+        }
+    }
+
+    // The index after a variable-length integer that readVarint has already checked
+    private static int varintEnd(byte[] data, int position) {
+        while (data[position] < 0) {
+            position++;
+        }
+        return position + 1;
+    }
+
+    // Writes an unsigned value 7 bits at a time, low bits first; returns the index after the last byte written
+    private static int writeVarint(byte[] out, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            out[position++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out[position++] = (byte) value;
+        return position;
+    }
+}
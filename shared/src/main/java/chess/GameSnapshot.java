@@ -0,0 +1,283 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * An immutable picture of a game at one point in time, safe to read from any thread without locking
+ */
+public final class GameSnapshot {
+
+    private static final int NO_MOVE = -1;
+
+    private final ChessGame.TeamColor teamTurn;
+    private final int castlingRights;
+    private final int enPassantSquare;
+    private final int halfmoveClock;
+    private final int fullmoveNumber;
+    private final long zobristKey;
+    private final long version;
+    private final int ply;
+    private final boolean threefoldRepetition;
+    private final GameSnapshot previous;
+    // The encoded move that led here from previous, or NO_MOVE when previous is null
+    private final int lastMove;
+    // Moves back to the nearest snapshot with a full board, which one is kept every CHECKPOINT_INTERVAL moves
+    private final int sinceFullBoard;
+    // Null until first read, then replayed from the nearest full board
+    private volatile long[] pieces;
+    // What the move queries need; null until the first one
+    private volatile Moves moves;
+
+    GameSnapshot(ChessBoard board, ChessGame.TeamColor teamTurn, int castlingRights, int enPassantSquare,
+                 int halfmoveClock, int fullmoveNumber, long zobristKey, long version, int ply,
+                 boolean threefoldRepetition, GameSnapshot previous, int lastMove) {
+        this.teamTurn = teamTurn;
+        this.castlingRights = castlingRights;
+        this.enPassantSquare = enPassantSquare;
+        this.halfmoveClock = halfmoveClock;
+        this.fullmoveNumber = fullmoveNumber;
+        this.zobristKey = zobristKey;
+        this.version = version;
+        this.ply = ply;
+        this.threefoldRepetition = threefoldRepetition;
+        this.previous = previous;
+        this.lastMove = previous == null ? NO_MOVE : lastMove;
+        this.sinceFullBoard = previous == null ? 0 : (previous.sinceFullBoard + 1) % ChessGame.CHECKPOINT_INTERVAL;
+        if (sinceFullBoard == 0) {
+            pieces = board.copyMasks();
+        }
+    }
+
+    // The board and the team to move's legal moves, grouped by origin square
+    private static final class Moves {
+        private final ChessBoard board;
+        private final MoveList turnMoves = new MoveList();
+        private final int[] turnMovesFrom = new int[65];
+
+        private Moves(ChessBoard board) {
+            this.board = board;
+        }
+    }
+
+    private Moves moves() {
+        Moves current = moves;
+        if (current == null) {
+            //two threads may both build it; either result is the same
+            current = new Moves(ChessBoard.fromMasks(pieces()));
+            MoveList legal = new MoveList();
+            MoveGenerator.generateLegalMoves(current.board, teamTurn, castlingRights, enPassantSquare, -1L, legal,
+                    false);
+            ChessGame.indexByOrigin(legal, current.turnMoves, current.turnMovesFrom);
+            moves = current;
+        }
+        return current;
+    }
+
+    Collection<ChessMove> validMoves(ChessPosition startPosition) {
+        Moves moves = moves();
+        ChessPiece piece = moves.board.getPiece(startPosition);
+        if (piece == null) {
+            return null;
+        }
+        int square = ChessBoard.square(startPosition);
+        if (piece.getTeamColor() != teamTurn) {
+            MoveList other = new MoveList();
+            MoveGenerator.generateLegalMoves(moves.board, piece.getTeamColor(), castlingRights, -1, 1L << square,
+                    other, false);
+            return other.toChessMoves();
+        }
+        int end = moves.turnMovesFrom[square + 1];
+        Collection<ChessMove> pieceMoves = new ArrayList<>(end - moves.turnMovesFrom[square]);
+        for (int i = moves.turnMovesFrom[square]; i < end; i++) {
+            pieceMoves.add(Move.toChessMove(moves.turnMoves.get(i)));
+        }
+        return pieceMoves;
+    }
+
+    void legalMoves(ChessGame.TeamColor color, MoveList into) {
+        Moves moves = moves();
+        into.clear();
+        if (color != teamTurn) {
+            MoveGenerator.generateLegalMoves(moves.board, color, castlingRights, -1, -1L, into, false);
+            return;
+        }
+        for (int i = 0; i < moves.turnMoves.size(); i++) {
+            into.add(moves.turnMoves.get(i));
+        }
+    }
+
+    Collection<ChessMove> possibleMoves(ChessGame.TeamColor color) {
+        MoveList possible = new MoveList();
+        MoveGenerator.generateMoves(moves().board, color, possible);
+        return possible.toChessMoves();
+    }
+
+    boolean inCheck(ChessGame.TeamColor color) {
+        ChessBoard board = moves().board;
+        int kingSquare = board.kingSquare(color);
+        //boards set up for testing don't always have a king
+        return kingSquare >= 0 && board.isSquareAttacked(kingSquare, color.opponent());
+    }
+
+    boolean hasMove(ChessGame.TeamColor color) {
+        Moves moves = moves();
+        if (color == teamTurn) {
+            return !moves.turnMoves.isEmpty();
+        }
+        return MoveGenerator.generateLegalMoves(moves.board, color, castlingRights, -1, -1L, new MoveList(), true);
+    }
+
+    boolean isThreefoldRepetition() {
+        return threefoldRepetition;
+    }
+
+    private long[] pieces() {
+        long[] masks = pieces;
+        if (masks == null) {
+            int[] moves = new int[sinceFullBoard];
+            GameSnapshot from = this;
+            long[] fromMasks = null;
+            int count = 0;
+            while ((fromMasks = from.pieces) == null) {
+                moves[count++] = from.lastMove;
+                from = from.previous;
+            }
+            masks = fromMasks.clone();
+            while (count > 0) {
+                play(masks, moves[--count]);
+            }
+            pieces = masks;
+        }
+        return masks;
+    }
+
+    // Plays a move on piece masks the way ChessGame.doMove plays it on a board
+    private static void play(long[] masks, int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int moved = indexAt(masks, from);
+        //an en passant capture takes the pawn beside the mover, not one on the square it lands on
+        int taken = (move & Move.EN_PASSANT) != 0 ? (from & ~7) | (to & 7) : to;
+        int captured = indexAt(masks, taken);
+        if (captured >= 0) {
+            masks[captured] &= ~(1L << taken);
+        }
+        masks[moved] &= ~(1L << from);
+        ChessPiece.PieceType promotion = Move.promotion(move);
+        int placed = promotion == null ? moved
+                : ChessBoard.pieceIndex(ChessBoard.pieceFor(moved).getTeamColor(), promotion);
+        masks[placed] |= 1L << to;
+        if ((move & Move.CASTLING) != 0) {
+            int rookFrom = to > from ? from + 3 : from - 4;
+            masks[indexAt(masks, rookFrom)] ^= 1L << rookFrom | 1L << (from + to) / 2;
+        }
+    }
+
+    private static int indexAt(long[] masks, int square) {
+        for (int index = 0; index < masks.length; index++) {
+            if ((masks[index] & 1L << square) != 0) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets a chess piece in this position
+     *
+     * @param position The position to get the piece from
+     * @return Either the piece at the position, or null if no piece is at that position
+     */
+    public ChessPiece getPiece(ChessPosition position) {
+        int index = indexAt(pieces(), ChessBoard.square(position));
+        return index < 0 ? null : ChessBoard.pieceFor(index);
+    }
+
+    /**
+     * @return Which team's turn it was in this position
+     */
+    public ChessGame.TeamColor getTeamTurn() {
+        return teamTurn;
+    }
+
+    /**
+     * @return the castling rights in this position
+     */
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    /**
+     * @return the square the team to move could capture onto en passant, or null
+     */
+    public ChessPosition getEnPassantSquare() {
+        return enPassantSquare < 0 ? null : ChessPosition.ofSquare(enPassantSquare);
+    }
+
+    /**
+     * @return the moves since the last capture or pawn move
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    /**
+     * @return the number of the full move being played
+     */
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    /**
+     * @return the Zobrist key of this position
+     */
+    public long getZobristKey() {
+        return zobristKey;
+    }
+
+    /**
+     * @return the game's version when this snapshot was taken, to pass to {@link ChessGame#tryMakeMove}
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the snapshot before getLastMove was played, or null
+     */
+    public GameSnapshot getPrevious() {
+        return previous;
+    }
+
+    /**
+     * @return the move that led to this position, or null if it wasn't made by a move
+     */
+    public ChessMove getLastMove() {
+        return lastMove == NO_MOVE ? null : Move.toChessMove(lastMove);
+    }
+
+    /**
+     * @return how many moves of the game's history had been played
+     */
+    public int getPly() {
+        return ply;
+    }
+
+    /**
+     * @return a new, mutable board with the pieces of this position
+     */
+    public ChessBoard toBoard() {
+        return ChessBoard.fromMasks(pieces());
+    }
+
+    /**
+     * @return a new, independent game in this position
+     */
+    public ChessGame toGame() {
+        ChessGame game = new ChessGame();
+        //set up in one change rather than one per setter
+        game.setPosition(toBoard(), teamTurn, castlingRights, enPassantSquare, halfmoveClock, fullmoveNumber);
+        return game;
+    }
+}
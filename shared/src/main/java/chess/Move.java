@@ -0,0 +1,100 @@
+package chess;
+
+/**
+ * Helpers for the compact move encoding used by move generation. A move is a single int:
+ * <ul>
+ *     <li>bits 0-5: the square the piece moves from (0 is a1, 63 is h8, same as ChessBoard)</li>
+ *     <li>bits 6-11: the square the piece moves to</li>
+ *     <li>bits 12-14: the promotion piece type's ordinal + 1, or 0 if the move does not promote</li>
+ *     <li>bits 15 and up: flags describing the move</li>
+ * </ul>
+ * Moves built this way need no allocation and can be stored in a {@link MoveList}.
+ */
+public final class Move {
+
+    /**
+     * Flag for a move that lands on an enemy piece
+     */
+    public static final int CAPTURE = 1 << 15;
+    /**
+     * Flag for a pawn moving two squares from its starting row
+     */
+    public static final int DOUBLE_PUSH = 1 << 16;
+    /**
+     * Flag for a pawn capturing en passant; these moves carry the CAPTURE flag too
+     */
+    public static final int EN_PASSANT = 1 << 17;
+    /**
+     * Flag for a king castling; the move itself is the king's two-square step
+     */
+    public static final int CASTLING = 1 << 18;
+
+    private static final int TO_SHIFT = 6;
+    private static final int PROMOTION_SHIFT = 12;
+    private static final int SQUARE_MASK = 0x3F;
+    // from, to and promotion: the part of a move that ChessMove can describe
+    private static final int IDENTITY_MASK = 0x7FFF;
+
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    private Move() {
+    }
+
+    /**
+     * @param from      square index the piece moves from
+     * @param to        square index the piece moves to
+     * @param promotion the piece a pawn becomes, or null
+     * @param flags     any combination of the flag constants in this class
+     * @return the encoded move
+     */
+    public static int encode(int from, int to, ChessPiece.PieceType promotion, int flags) {
+        int promotionBits = promotion == null ? 0 : promotion.ordinal() + 1;
+        return from | to << TO_SHIFT | promotionBits << PROMOTION_SHIFT | flags;
+    }
+
+    public static int from(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    public static int to(int move) {
+        return move >>> TO_SHIFT & SQUARE_MASK;
+    }
+
+    /**
+     * @return the promotion piece type, or null if the move does not promote
+     */
+    public static ChessPiece.PieceType promotion(int move) {
+        int promotionBits = move >>> PROMOTION_SHIFT & 0x7;
+        return promotionBits == 0 ? null : TYPES[promotionBits - 1];
+    }
+
+    public static boolean isCapture(int move) {
+        return (move & CAPTURE) != 0;
+    }
+
+    /**
+     * @return True if both moves go between the same squares with the same promotion, ignoring flags
+     */
+    public static boolean sameMove(int move, int other) {
+        return (move & IDENTITY_MASK) == (other & IDENTITY_MASK);
+    }
+
+    /**
+     * @return the move with its flags cleared, leaving from, to and promotion in the low 15 bits
+     */
+    public static int withoutFlags(int move) {
+        return move & IDENTITY_MASK;
+    }
+
+    /**
+     * @return the encoded move with no flags set, which is all a ChessMove carries
+     */
+    public static int fromChessMove(ChessMove move) {
+        return encode(ChessBoard.square(move.getStartPosition()), ChessBoard.square(move.getEndPosition()),
+                move.getPromotionPiece(), 0);
+    }
+
+    public static ChessMove toChessMove(int move) {
+        return new ChessMove(ChessPosition.ofSquare(from(move)), ChessPosition.ofSquare(to(move)), promotion(move));
+    }
+}
@@ -0,0 +1,270 @@
+package chess;
+
+/**
+ * Move generation straight from ChessBoard's occupancy masks into a {@link MoveList}.
+ * <p>
+ * The pseudo-legal generators ignore whether a move leaves the mover's own king in danger. The legal generator
+ * works that out up front instead of playing each move: it finds the pieces giving check and the pieces pinned
+ * to their own king, then only generates moves that escape the check and keep pinned pieces on their pin line.
+ * Castling and en passant depend on more than the board, so the legal generator is told the castling rights
+ * and en passant square; they are generated only there.
+ */
+final class MoveGenerator {
+
+    private static final ChessPiece.PieceType[] PROMOTIONS = {
+            ChessPiece.PieceType.QUEEN, ChessPiece.PieceType.ROOK,
+            ChessPiece.PieceType.BISHOP, ChessPiece.PieceType.KNIGHT};
+
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    private MoveGenerator() {
+    }
+
+    /**
+     * Adds the legal moves of a team's pieces to the list
+     *
+     * @param board           the board to generate moves on
+     * @param color           the team to move
+     * @param castlingRights  the castling rights bitmask, as in ChessGame
+     * @param enPassantSquare the square a pawn can capture en passant onto, or -1
+     * @param fromMask        only pieces standing on these squares get moves generated (-1 for every piece)
+     * @param moves           where to put the moves
+     * @param stopAtFirst     return as soon as one legal move has been found
+     * @return True if at least one legal move was added
+     */
+    static boolean generateLegalMoves(ChessBoard board, ChessGame.TeamColor color, int castlingRights,
+                                      int enPassantSquare, long fromMask, MoveList moves, boolean stopAtFirst) {
+        int start = moves.size();
+        long own = board.colorMask(color);
+        int king = board.kingSquare(color);
+        if (king < 0) {
+            //without a king nothing can be left in check, so every pseudo-legal move is legal
+            long pieces = own & fromMask;
+            while (pieces != 0) {
+                int from = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+                generatePieceMoves(board, from, color, TYPES[board.pieceIndexAt(from) % 6], -1L, moves);
+                if (stopAtFirst && moves.size() > start) {
+                    return true;
+                }
+            }
+            addEnPassant(board, color, king, enPassantSquare, fromMask, moves);
+            return moves.size() > start;
+        }
+
+        ChessGame.TeamColor enemy = color.opponent();
+        long occupied = board.occupied();
+        long checkers = board.attackersOf(king, enemy, occupied);
+
+        if ((fromMask & 1L << king) != 0) {
+            //the king is lifted off the board while testing its targets, so it can't hide behind itself on a ray
+            long withoutKing = occupied & ~(1L << king);
+            long enemies = board.colorMask(enemy);
+            long targets = AttackTables.kingAttacks(king) & ~own;
+            while (targets != 0) {
+                int to = Long.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                if (board.attackersOf(to, enemy, withoutKing) == 0) {
+                    moves.add(Move.encode(king, to, null, (enemies & 1L << to) != 0 ? Move.CAPTURE : 0));
+                    if (stopAtFirst) {
+                        return true;
+                    }
+                }
+            }
+            if (checkers == 0 && castlingRights != 0) {
+                addCastling(board, color, king, castlingRights, moves);
+            }
+        }
+        //en passant can uncover a check along the row of both pawns, so it's tested by taking both pawns off the board
+        addEnPassant(board, color, king, enPassantSquare, fromMask, moves);
+        if (stopAtFirst && moves.size() > start) {
+            return true;
+        }
+        //in double check only the king can move
+        if (Long.bitCount(checkers) > 1) {
+            return moves.size() > start;
+        }
+
+        //out of check any destination works; in check a move has to capture the checker or block its ray
+        long allowed = checkers == 0 ? -1L
+                : checkers | AttackTables.between(king, Long.numberOfTrailingZeros(checkers));
+        long pinned = pinnedPieces(board, color, king);
+        long pieces = own & fromMask & ~(1L << king);
+        while (pieces != 0) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            long pieceAllowed = (pinned & 1L << from) != 0 ? allowed & AttackTables.line(king, from) : allowed;
+            generatePieceMoves(board, from, color, TYPES[board.pieceIndexAt(from) % 6], pieceAllowed, moves);
+            if (stopAtFirst && moves.size() > start) {
+                return true;
+            }
+        }
+        return moves.size() > start;
+    }
+
+    // Castling: the king and rook are on their starting squares, nothing stands between them, and the king is
+    // not in check and doesn't pass through or land on an attacked square
+    private static void addCastling(ChessBoard board, ChessGame.TeamColor color, int king, int castlingRights,
+                                    MoveList moves) {
+        int home = color == ChessGame.TeamColor.WHITE ? 4 : 60;
+        if (king != home) {
+            return;
+        }
+        ChessGame.TeamColor enemy = color.opponent();
+        long occupied = board.occupied();
+        long rooks = board.pieces(color, ChessPiece.PieceType.ROOK);
+        int shift = 2 * color.ordinal();
+        if ((castlingRights & ChessGame.WHITE_KINGSIDE << shift) != 0 && (rooks & 1L << (home + 3)) != 0
+                && (occupied & 3L << (home + 1)) == 0
+                && !board.isSquareAttacked(home + 1, enemy) && !board.isSquareAttacked(home + 2, enemy)) {
+            moves.add(Move.encode(home, home + 2, null, Move.CASTLING));
+        }
+        if ((castlingRights & ChessGame.WHITE_QUEENSIDE << shift) != 0 && (rooks & 1L << (home - 4)) != 0
+                && (occupied & 7L << (home - 3)) == 0
+                && !board.isSquareAttacked(home - 1, enemy) && !board.isSquareAttacked(home - 2, enemy)) {
+            moves.add(Move.encode(home, home - 2, null, Move.CASTLING));
+        }
+    }
+
+    private static void addEnPassant(ChessBoard board, ChessGame.TeamColor color, int king, int enPassantSquare,
+                                     long fromMask, MoveList moves) {
+        if (enPassantSquare < 0) {
+            return;
+        }
+        ChessGame.TeamColor enemy = color.opponent();
+        //the pawn that just moved two squares sits right past the en passant square
+        int captured = color == ChessGame.TeamColor.WHITE ? enPassantSquare - 8 : enPassantSquare + 8;
+        if ((board.pieces(enemy, ChessPiece.PieceType.PAWN) & 1L << captured) == 0
+                || (board.occupied() & 1L << enPassantSquare) != 0) {
+            return;
+        }
+        long pawns = AttackTables.pawnAttacks(enemy, enPassantSquare)
+                & board.pieces(color, ChessPiece.PieceType.PAWN) & fromMask;
+        while (pawns != 0) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+            if (king >= 0) {
+                long occupied = (board.occupied() & ~(1L << from) & ~(1L << captured)) | 1L << enPassantSquare;
+                if ((board.attackersOf(king, enemy, occupied) & ~(1L << captured)) != 0) {
+                    continue;
+                }
+            }
+            moves.add(Move.encode(from, enPassantSquare, null, Move.CAPTURE | Move.EN_PASSANT));
+        }
+    }
+
+    /**
+     * Finds the team's pieces that are the only thing standing between their king and an enemy rook, bishop or
+     * queen. Those pieces may only move along the line between the king and the attacker.
+     */
+    static long pinnedPieces(ChessBoard board, ChessGame.TeamColor color, int king) {
+        ChessGame.TeamColor enemy = color.opponent();
+        long queens = board.pieces(enemy, ChessPiece.PieceType.QUEEN);
+        long snipers = (AttackTables.rookAttacks(king, 0L) & (board.pieces(enemy, ChessPiece.PieceType.ROOK) | queens))
+                | (AttackTables.bishopAttacks(king, 0L) & (board.pieces(enemy, ChessPiece.PieceType.BISHOP) | queens));
+        long occupied = board.occupied();
+        long pinned = 0L;
+        while (snipers != 0) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+            long blockers = AttackTables.between(king, sniper) & occupied;
+            if (Long.bitCount(blockers) == 1) {
+                pinned |= blockers & board.colorMask(color);
+            }
+        }
+        return pinned;
+    }
+
+    /**
+     * Adds every pseudo-legal move for all of a team's pieces to the list
+     */
+    static void generateMoves(ChessBoard board, ChessGame.TeamColor color, MoveList moves) {
+        long own = board.colorMask(color);
+        while (own != 0) {
+            int from = Long.numberOfTrailingZeros(own);
+            own &= own - 1;
+            generatePieceMoves(board, from, color, TYPES[board.pieceIndexAt(from) % 6], -1L, moves);
+        }
+    }
+
+    /**
+     * Adds the pseudo-legal moves of a single piece to the list
+     *
+     * @param board the board the piece is on
+     * @param from  the square the piece stands on
+     * @param color the piece's team
+     * @param type  the piece's type
+     * @param moves where to put the moves
+     */
+    static void generatePieceMoves(ChessBoard board, int from, ChessGame.TeamColor color,
+                                   ChessPiece.PieceType type, MoveList moves) {
+        generatePieceMoves(board, from, color, type, -1L, moves);
+    }
+
+    // Pseudo-legal moves of one piece, keeping only those that land on a square in allowed
+    private static void generatePieceMoves(ChessBoard board, int from, ChessGame.TeamColor color,
+                                           ChessPiece.PieceType type, long allowed, MoveList moves) {
+        long occupied = board.occupied();
+        long targets = switch (type) {
+            case KING -> AttackTables.kingAttacks(from);
+            case QUEEN -> AttackTables.queenAttacks(from, occupied);
+            case BISHOP -> AttackTables.bishopAttacks(from, occupied);
+            case KNIGHT -> AttackTables.knightAttacks(from);
+            case ROOK -> AttackTables.rookAttacks(from, occupied);
+            case PAWN -> {
+                generatePawnMoves(board, from, color, allowed, moves);
+                yield 0L;
+            }
+        };
+        addMoves(from, targets & ~board.colorMask(color) & allowed, board.colorMask(color.opponent()), moves);
+    }
+
+    private static void generatePawnMoves(ChessBoard board, int from, ChessGame.TeamColor color, long allowed,
+                                          MoveList moves) {
+        long empty = ~board.occupied();
+        long enemies = board.colorMask(color.opponent());
+        long captures = AttackTables.pawnAttacks(color, from) & enemies;
+        long pushes;
+        long doublePush;
+        int promotionRow;
+        if (color == ChessGame.TeamColor.WHITE) {
+            pushes = (1L << from << 8) & empty;
+            //the double move needs both squares in front of a pawn on its starting row to be empty
+            doublePush = from / 8 == 1 ? (pushes << 8) & empty : 0L;
+            promotionRow = 7;
+        } else {
+            pushes = (1L << from >>> 8) & empty;
+            doublePush = from / 8 == 6 ? (pushes >>> 8) & empty : 0L;
+            promotionRow = 0;
+        }
+
+        addPawnMoves(from, pushes & allowed, promotionRow, 0, moves);
+        addPawnMoves(from, captures & allowed, promotionRow, Move.CAPTURE, moves);
+        if ((doublePush & allowed) != 0) {
+            moves.add(Move.encode(from, Long.numberOfTrailingZeros(doublePush), null, Move.DOUBLE_PUSH));
+        }
+    }
+
+    private static void addPawnMoves(int from, long targets, int promotionRow, int flags, MoveList moves) {
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            if (to / 8 == promotionRow) {
+                for (ChessPiece.PieceType promotion : PROMOTIONS) {
+                    moves.add(Move.encode(from, to, promotion, flags));
+                }
+            } else {
+                moves.add(Move.encode(from, to, null, flags));
+            }
+        }
+    }
+
+    // Adds a move from one square to each target square, flagging the ones that land on an enemy
+    private static void addMoves(int from, long targets, long enemies, MoveList moves) {
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            moves.add(Move.encode(from, to, null, (enemies & (1L << to)) != 0 ? Move.CAPTURE : 0));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * A growable list of encoded moves (see {@link Move}) backed by a plain int array.
+ * Clearing keeps the array, so one list can be refilled over and over without allocating.
+ */
+public class MoveList {
+
+    // No legal chess position has more than 218 moves, so this almost never has to grow
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private int[] moves;
+    private int size;
+
+    public MoveList() {
+        moves = new int[DEFAULT_CAPACITY];
+    }
+
+    public void add(int move) {
+        if (size == moves.length) {
+            int[] bigger = new int[size * 2];
+            System.arraycopy(moves, 0, bigger, 0, size);
+            moves = bigger;
+        }
+        moves[size++] = move;
+    }
+
+    public int get(int index) {
+        return moves[index];
+    }
+
+    public void set(int index, int move) {
+        moves[index] = move;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Shrinks the list, dropping every move from index newSize on
+     */
+    public void truncate(int newSize) {
+        size = newSize;
+    }
+
+    /**
+     * @return True if the list holds a move between the same squares with the same promotion
+     */
+    public boolean containsMove(int move) {
+        for (int i = 0; i < size; i++) {
+            if (Move.sameMove(moves[i], move)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the moves converted to ChessMove objects, for callers that use the object API
+     */
+    public Collection<ChessMove> toChessMoves() {
+        Collection<ChessMove> chessMoves = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            chessMoves.add(Move.toChessMove(moves[i]));
+        }
+        return chessMoves;
+    }
+}
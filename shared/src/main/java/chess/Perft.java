@@ -0,0 +1,216 @@
+package chess;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Perft (performance test): counts every leaf of the legal move tree to a fixed depth.
+ * <p>
+ * The counts for well known positions are published, so a mismatch means move generation is wrong,
+ * and the time it takes gives a nodes-per-second figure for comparing changes to the move generator.
+ * Run from the command line with {@code depth [threads] [divide] [FEN]}, the FEN defaulting to the starting
+ * position; with no arguments every standard position is checked against its reference counts.
+ */
+public class Perft {
+
+    /**
+     * A test position, given as a FEN, with the published leaf counts for depths 1, 2, 3, ...
+     */
+    public record Position(String name, String fen, long... expected) {
+
+        /**
+         * @return a new game set up in this position
+         */
+        public ChessGame toGame() {
+            return Fen.parse(fen);
+        }
+    }
+
+    /**
+     * The outcome of one perft run
+     */
+    public record Result(long nodes, long nanos) {
+
+        public double nodesPerSecond() {
+            return nanos == 0 ? 0 : nodes * 1_000_000_000.0 / nanos;
+        }
+    }
+
+    public static final List<Position> STANDARD_POSITIONS = List.of(
+            new Position("start", Fen.START, 20, 400, 8902, 197281, 4865609),
+            new Position("kiwipete", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                    48, 2039, 97862, 4085603),
+            new Position("position 3", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                    14, 191, 2812, 43238, 674624),
+            new Position("position 4", "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                    6, 264, 9467, 422333),
+            new Position("position 5", "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+                    44, 1486, 62379, 2103487),
+            new Position("position 6", "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+                    46, 2079, 89890, 3894594)
+    );
+
+    private Perft() {
+    }
+
+    /**
+     * Counts the leaf nodes of the legal move tree below the game's current position
+     *
+     * @param game  the position to start from; it is left exactly as it was
+     * @param depth how many plies to search, at least 1
+     * @return the number of positions reached after exactly depth moves
+     */
+    public static long perft(ChessGame game, int depth) {
+        MoveList[] lists = new MoveList[depth + 1];
+        for (int i = 0; i <= depth; i++) {
+            lists[i] = new MoveList();
+        }
+        return perft(game, depth, lists);
+    }
+
+    private static long perft(ChessGame game, int depth, MoveList[] lists) {
+        MoveList moves = lists[depth];
+        game.generateLegalMoves(game.getTeamTurn(), moves);
+        //the leaf count one ply from the bottom is just the number of legal moves, no need to play them
+        if (depth == 1) {
+            return moves.size();
+        }
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            game.doMove(moves.get(i));
+            nodes += perft(game, depth - 1, lists);
+            game.undoMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * Runs perft and times it
+     */
+    public static Result timed(ChessGame game, int depth) {
+        long start = System.nanoTime();
+        long nodes = perft(game, depth);
+        return new Result(nodes, System.nanoTime() - start);
+    }
+
+    /**
+     * Breaks a perft count down by root move, which narrows a wrong total down to the move that causes it
+     *
+     * @return the leaf count below each legal root move, in generation order
+     */
+    public static Map<ChessMove, Long> divide(ChessGame game, int depth) {
+        Map<ChessMove, Long> counts = new LinkedHashMap<>();
+        MoveList moves = new MoveList();
+        game.generateLegalMoves(game.getTeamTurn(), moves);
+        for (int i = 0; i < moves.size(); i++) {
+            game.doMove(moves.get(i));
+            counts.put(Move.toChessMove(moves.get(i)), depth == 1 ? 1L : perft(game, depth - 1));
+            game.undoMove();
+        }
+        return counts;
+    }
+
+    /**
+     * Runs perft with the root moves shared out over a pool of threads, each working on its own copy of the game
+     *
+     * @param threads how many worker threads to use
+     */
+    public static Result parallel(ChessGame game, int depth, int threads) throws InterruptedException {
+        if (depth < 2 || threads < 2) {
+            return timed(game, depth);
+        }
+        long start = System.nanoTime();
+        MoveList moves = new MoveList();
+        game.generateLegalMoves(game.getTeamTurn(), moves);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> counts = new ArrayList<>();
+            for (int i = 0; i < moves.size(); i++) {
+                int move = moves.get(i);
+                counts.add(pool.submit(() -> {
+                    ChessGame copy = new ChessGame(game);
+                    copy.doMove(move);
+                    return perft(copy, depth - 1);
+                }));
+            }
+            long nodes = 0;
+            for (Future<Long> count : counts) {
+                nodes += count.get();
+            }
+            return new Result(nodes, System.nanoTime() - start);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Algebraic name of a square, e.g. row 2 column 5 is "e2"
+    private static String squareName(ChessPosition position) {
+        return "" + (char) ('a' + position.getColumn() - 1) + position.getRow();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (run(args, System.out) != 0) {
+            //rather than System.exit, which would also end a JVM shared with the caller, such as exec:java's
+            throw new IllegalStateException("Some perft counts don't match the published ones");
+        }
+    }
+
+    // Runs the command line and returns its exit status: 1 if a standard position's count was wrong
+    static int run(String[] args, PrintStream out) throws InterruptedException {
+        if (args.length == 0) {
+            boolean allPassed = true;
+            for (Position position : STANDARD_POSITIONS) {
+                for (int depth = 1; depth <= position.expected().length; depth++) {
+                    Result result = parallel(position.toGame(), depth, 1);
+                    long expected = position.expected()[depth - 1];
+                    allPassed &= result.nodes() == expected;
+                    out.printf("%-12s depth %d: %,12d nodes (expected %,d) %s %,14.0f nodes/s%n",
+                            position.name(), depth, result.nodes(), expected,
+                            result.nodes() == expected ? "ok  " : "FAIL", result.nodesPerSecond());
+                }
+            }
+            return allPassed ? 0 : 1;
+        }
+
+        int depth = Integer.parseInt(args[0]);
+        int threads = 1;
+        boolean divide = false;
+        //whatever follows the options is the FEN, as one argument or as its separate fields
+        StringBuilder fen = new StringBuilder();
+        for (int i = 1; i < args.length; i++) {
+            if (fen.isEmpty() && args[i].equals("divide")) {
+                divide = true;
+            } else if (i == 1 && args[i].matches("\\d+")) {
+                threads = Integer.parseInt(args[i]);
+            } else {
+                fen.append(fen.isEmpty() ? "" : " ").append(args[i]);
+            }
+        }
+        ChessGame game = Fen.parse(fen.isEmpty() ? Fen.START : fen);
+        if (divide) {
+            long total = 0;
+            for (Map.Entry<ChessMove, Long> entry : divide(game, depth).entrySet()) {
+                ChessMove move = entry.getKey();
+                out.printf("%s%s%s: %d%n", squareName(move.getStartPosition()), squareName(move.getEndPosition()),
+                        move.getPromotionPiece() == null ? "" : "=" + move.getPromotionPiece(), entry.getValue());
+                total += entry.getValue();
+            }
+            out.println("total: " + total);
+        } else {
+            Result result = parallel(game, depth, threads);
+            out.printf("depth %d: %,d nodes in %.3fs, %,.0f nodes/s%n",
+                    depth, result.nodes(), result.nanos() / 1e9, result.nodesPerSecond());
+        }
+        return 0;
+    }
+}
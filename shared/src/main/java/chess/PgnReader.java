@@ -0,0 +1,237 @@
+package chess;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads games one at a time from a PGN file or stream through one fixed buffer.
+ * Comments, variations and annotations are skipped, and the moves aren't checked.
+ */
+public class PgnReader implements Closeable {
+
+    /**
+     * One game as written in the file
+     *
+     * @param tags   the tag pairs in file order, e.g. Event, White, Black and Result
+     * @param moves  the SAN moves of the main line
+     * @param result the game termination marker: "1-0", "0-1", "1/2-1/2" or "*"
+     */
+    public record Game(Map<String, String> tags, List<String> moves, String result) {
+    }
+
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final String[] RESULTS = {"1-0", "0-1", "1/2-1/2", "*"};
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+    private final StringBuilder token = new StringBuilder();
+    // Raw bytes of the tag value being read, decoded once it is complete
+    private byte[] tagValue = new byte[256];
+    // A byte read ahead and given back, or -1
+    private int pushedBack = -1;
+    // The last byte taken from the input, and whether it was the first on its line
+    private int lastByte = '\n';
+    private boolean lineStart;
+    private boolean endOfInput;
+
+    public PgnReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        buffer.flip();
+    }
+
+    /**
+     * Reads the next game
+     *
+     * @return the game, or null at the end of the input
+     */
+    public Game next() throws IOException {
+        Map<String, String> tags = new LinkedHashMap<>();
+        List<String> moves = new ArrayList<>();
+        boolean inMovetext = false;
+        while (true) {
+            int c = skipWhitespace();
+            if (c < 0) {
+                if (tags.isEmpty() && moves.isEmpty()) {
+                    return null;
+                }
+                return game(tags, moves, tags.getOrDefault("Result", "*"));
+            }
+            if (c == '%' && lineStart) {
+                //an escape line, for other programs; a % anywhere else is just part of the movetext
+                skipUntil('\n');
+                continue;
+            }
+            switch (c) {
+                case '[' -> {
+                    if (inMovetext) {
+                        //a game without a result marker: the next one's tags have started
+                        pushedBack = c;
+                        return game(tags, moves, tags.getOrDefault("Result", "*"));
+                    }
+                    readTag(tags);
+                }
+                case '{' -> skipUntil('}');
+                case ';' -> skipUntil('\n');
+                case '(' -> skipVariation();
+                case ')', '}', ']' -> {
+                    //stray closer; nothing to do
+                }
+                default -> {
+                    inMovetext = true;
+                    readToken(c);
+                    if (token.charAt(0) == '$') {
+                        continue;
+                    }
+                    String result = result(token);
+                    if (result != null) {
+                        return game(tags, moves, result);
+                    }
+                    //drop a move number written against the move, as in "12.Nf3" or "12...Nf6"
+                    int start = 0;
+                    while (start < token.length() && Character.isDigit(token.charAt(start))) {
+                        start++;
+                    }
+                    if (start < token.length() && token.charAt(start) == '.') {
+                        while (start < token.length() && token.charAt(start) == '.') {
+                            start++;
+                        }
+                    } else {
+                        start = 0;
+                    }
+                    //what's left is a move unless it was only a move number or a stand-alone "!?" annotation
+                    if (start < token.length()
+                            && (Character.isLetter(token.charAt(start)) || token.charAt(start) == '0')) {
+                        moves.add(token.substring(start));
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static Game game(Map<String, String> tags, List<String> moves, String result) {
+        return new Game(Collections.unmodifiableMap(tags), Collections.unmodifiableList(moves), result);
+    }
+
+    private static String result(CharSequence token) {
+        for (String result : RESULTS) {
+            if (result.contentEquals(token)) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    // Reads [Name "value"] after the opening bracket; backslash escapes a quote or backslash in the value
+    private void readTag(Map<String, String> tags) throws IOException {
+        int c = skipWhitespace();
+        token.setLength(0);
+        while (c >= 0 && !Character.isWhitespace(c) && c != '"' && c != ']') {
+            token.append((char) c);
+            c = read();
+        }
+        String name = token.toString();
+        while (c >= 0 && c != '"' && c != ']') {
+            c = read();
+        }
+        int length = 0;
+        if (c == '"') {
+            for (c = read(); c >= 0 && c != '"'; c = read()) {
+                if (c == '\\') {
+                    c = read();
+                    if (c < 0) {
+                        break;
+                    }
+                }
+                if (length == tagValue.length) {
+                    tagValue = Arrays.copyOf(tagValue, length * 2);
+                }
+                tagValue[length++] = (byte) c;
+            }
+            skipUntil(']');
+        }
+        tags.put(name, new String(tagValue, 0, length, StandardCharsets.UTF_8));
+    }
+
+    // Reads a movetext token starting with c, up to whitespace or a character that starts something else
+    private void readToken(int c) throws IOException {
+        token.setLength(0);
+        while (c >= 0 && !Character.isWhitespace(c) && "{}()[];".indexOf(c) < 0) {
+            token.append((char) c);
+            c = read();
+        }
+        if (c >= 0 && !Character.isWhitespace(c)) {
+            pushedBack = c;
+        }
+    }
+
+    // Skips a recursive annotation variation after its opening parenthesis, including nested ones and comments
+    private void skipVariation() throws IOException {
+        int depth = 1;
+        while (depth > 0) {
+            int c = read();
+            switch (c) {
+                case -1 -> {
+                    return;
+                }
+                case '(' -> depth++;
+                case ')' -> depth--;
+                case '{' -> skipUntil('}');
+                case ';' -> skipUntil('\n');
+                default -> {
+                }
+            }
+        }
+    }
+
+    private void skipUntil(int end) throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c >= 0 && c != end);
+    }
+
+    private int skipWhitespace() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c >= 0 && Character.isWhitespace(c));
+        return c;
+    }
+
+    // The next byte as an unsigned value, or -1 at the end of the input. A byte given back is the last byte
+    // read, so it keeps its lineStart.
+    private int read() throws IOException {
+        if (pushedBack >= 0) {
+            int c = pushedBack;
+            pushedBack = -1;
+            return c;
+        }
+        while (!buffer.hasRemaining()) {
+            if (endOfInput) {
+                return -1;
+            }
+            buffer.clear();
+            if (channel.read(buffer) < 0) {
+                endOfInput = true;
+            }
+            buffer.flip();
+        }
+        lineStart = lastByte == '\n';
+        lastByte = buffer.get() & 0xFF;
+        return lastByte;
+    }
+}
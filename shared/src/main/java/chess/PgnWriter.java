@@ -0,0 +1,105 @@
+package chess;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes games as PGN to an output stream, one after another. A writer is for one thread at a time.
+ */
+public class PgnWriter implements Closeable, Flushable {
+
+    // PGN export format keeps movetext lines under 80 characters
+    private static final int LINE_LENGTH = 79;
+
+    private final OutputStream out;
+    private final ChessGame game = new ChessGame();
+    private final StringBuilder text = new StringBuilder();
+    private final StringBuilder moveText = new StringBuilder();
+
+    public PgnWriter(OutputStream out) {
+        this.out = new BufferedOutputStream(out, 1 << 16);
+    }
+
+    /**
+     * Writes one game, starting from its "FEN" tag if it has one
+     *
+     * @param tags   the tag pairs, written in iteration order
+     * @param moves  the moves played
+     * @param result "1-0", "0-1", "1/2-1/2" or "*"
+     * @throws IllegalArgumentException if a move isn't legal where it is played
+     */
+    public void write(Map<String, String> tags, List<ChessMove> moves, String result) throws IOException {
+        text.setLength(0);
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            if (!tag.getKey().equals("Result")) {
+                appendTag(tag.getKey(), tag.getValue());
+            }
+        }
+        appendTag("Result", result);
+        text.append('\n');
+
+        Fen.load(tags.getOrDefault("FEN", Fen.START), game);
+        int lineStart = text.length();
+        for (int ply = 0; ply < moves.size(); ply++) {
+            int move = game.legalMove(Move.fromChessMove(moves.get(ply)));
+            if (move < 0) {
+                throw new IllegalArgumentException("Illegal move " + moves.get(ply) + " at ply " + ply);
+            }
+            moveText.setLength(0);
+            if (game.getTeamTurn() == ChessGame.TeamColor.WHITE) {
+                moveText.append(game.getFullmoveNumber()).append(". ");
+            } else if (ply == 0) {
+                moveText.append(game.getFullmoveNumber()).append("... ");
+            }
+            San.append(game, move, moveText);
+            lineStart = appendWord(moveText, lineStart);
+            game.doMove(move);
+        }
+        appendWord(result, lineStart);
+        text.append("\n\n");
+
+        out.write(text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void appendTag(String name, String value) {
+        text.append('[').append(name).append(" \"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                text.append('\\');
+            }
+            text.append(c);
+        }
+        text.append("\"]\n");
+    }
+
+    // Adds a word to the movetext, starting a new line if it wouldn't fit; returns where the current line starts
+    private int appendWord(CharSequence word, int lineStart) {
+        if (text.length() > lineStart) {
+            if (text.length() - lineStart + 1 + word.length() > LINE_LENGTH) {
+                text.append('\n');
+                lineStart = text.length();
+            } else {
+                text.append(' ');
+            }
+        }
+        text.append(word);
+        return lineStart;
+    }
+}
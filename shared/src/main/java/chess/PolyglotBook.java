@@ -0,0 +1,241 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.random.RandomGenerator;
+
+/**
+ * An opening book in the Polyglot {@code .bin} format, memory-mapped read-only and looked up by binary search.
+ * One book can serve any number of games and threads.
+ */
+public class PolyglotBook {
+
+    // Sorted big-endian entries: Polyglot key (8 bytes), move (2), weight (2) and learning data (4) we ignore
+    private static final int ENTRY_BYTES = 16;
+    private static final int RANDOM_COUNT = 781;
+    // Offsets into the random table after the 768 piece-square numbers
+    private static final int CASTLE_OFFSET = 768;
+    private static final int EN_PASSANT_OFFSET = 772;
+    private static final int TURN_OFFSET = 780;
+
+    // Polyglot promotion codes 1-4
+    private static final ChessPiece.PieceType[] PROMOTIONS = {null,
+            ChessPiece.PieceType.KNIGHT, ChessPiece.PieceType.BISHOP,
+            ChessPiece.PieceType.ROOK, ChessPiece.PieceType.QUEEN};
+
+    // Polyglot numbers pieces black pawn, white pawn, black knight, white knight, ... black king, white king.
+    // Indexed by PieceType ordinal (KING, QUEEN, BISHOP, KNIGHT, ROOK, PAWN), this is the black piece's kind.
+    private static final int[] KINDS = {10, 8, 4, 2, 6, 0};
+
+    private final MappedByteBuffer entries;
+    private final int size;
+    private final long[] random;
+    // Scratch space for the legal moves of the position being looked up
+    private final ThreadLocal<MoveList> legalMoves = ThreadLocal.withInitial(MoveList::new);
+
+    private PolyglotBook(MappedByteBuffer entries, long[] random) {
+        this.entries = entries;
+        this.size = entries.capacity() / ENTRY_BYTES;
+        this.random = random;
+    }
+
+    /**
+     * Maps a book file made with the standard Polyglot random numbers
+     *
+     * @throws IOException if the file can't be read or isn't a Polyglot book
+     */
+    public static PolyglotBook open(Path file) throws IOException {
+        return open(file, PolyglotRandom.RANDOM_64);
+    }
+
+    /**
+     * Maps a book file whose keys were made with the given random number table
+     *
+     * @param random the 781 Polyglot random numbers
+     */
+    public static PolyglotBook open(Path file, long[] random) throws IOException {
+        if (random.length != RANDOM_COUNT) {
+            throw new IllegalArgumentException("Polyglot needs " + RANDOM_COUNT + " random numbers, got "
+                    + random.length);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length % ENTRY_BYTES != 0 || length > Integer.MAX_VALUE) {
+                throw new IOException(file + " is not a Polyglot book: its size is " + length + " bytes");
+            }
+            //the mapping stays valid after the channel is closed
+            return new PolyglotBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, length), random.clone());
+        }
+    }
+
+    /**
+     * @return how many entries the book holds
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Picks a book move for the current position, each move chosen with probability proportional to its weight
+     *
+     * @param game   the game to find a move for; it is not changed
+     * @param random where to get the random number from
+     * @return a legal book move, or null if the position isn't in the book
+     */
+    public ChessMove pickMove(ChessGame game, RandomGenerator random) {
+        long key = key(game);
+        int first = firstEntry(key);
+        MoveList moves = legalMoves(game);
+        int total = 0;
+        for (int i = first; i < size && entryKey(i) == key; i++) {
+            if (legalMove(game.getBoard(), moves, i) != 0) {
+                total += weight(i);
+            }
+        }
+        if (total == 0) {
+            return bestMove(game);
+        }
+        int target = random.nextInt(total);
+        for (int i = first; i < size && entryKey(i) == key; i++) {
+            int move = legalMove(game.getBoard(), moves, i);
+            if (move != 0) {
+                target -= weight(i);
+                if (target < 0) {
+                    return Move.toChessMove(move);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the book move with the highest weight in the current position, or null if the position isn't
+     * in the book
+     */
+    public ChessMove bestMove(ChessGame game) {
+        long key = key(game);
+        MoveList moves = legalMoves(game);
+        int best = 0;
+        int bestWeight = -1;
+        for (int i = firstEntry(key); i < size && entryKey(i) == key; i++) {
+            int move = legalMove(game.getBoard(), moves, i);
+            if (move != 0 && weight(i) > bestWeight) {
+                best = move;
+                bestWeight = weight(i);
+            }
+        }
+        return best == 0 ? null : Move.toChessMove(best);
+    }
+
+    /**
+     * Computes the Polyglot key of the game's current position with this book's random numbers
+     */
+    public long key(ChessGame game) {
+        return key(game, random);
+    }
+
+    /**
+     * Computes the standard Polyglot key of the game's current position, the one any Polyglot book or tool
+     * uses; the starting position's is 0x463B96181691FC9C
+     */
+    public static long standardKey(ChessGame game) {
+        return key(game, PolyglotRandom.RANDOM_64);
+    }
+
+    private static long key(ChessGame game, long[] random) {
+        ChessBoard board = game.getBoard();
+        long key = 0;
+        for (int index = 0; index < 12; index++) {
+            //our piece index is color * 6 + type, with white first
+            int kind = KINDS[index % 6] + (index < 6 ? 1 : 0);
+            long mask = board.pieces(index);
+            while (mask != 0) {
+                int square = Long.numberOfTrailingZeros(mask);
+                mask &= mask - 1;
+                key ^= random[64 * kind + square];
+            }
+        }
+
+        //our castling rights bits are already in Polyglot order: white short, white long, black short, black long
+        int castleRights = game.getCastlingRights();
+        for (int right = 0; right < 4; right++) {
+            if ((castleRights & 1 << right) != 0) {
+                key ^= random[CASTLE_OFFSET + right];
+            }
+        }
+        int enPassantFile = enPassantFile(game);
+        if (enPassantFile >= 0) {
+            key ^= random[EN_PASSANT_OFFSET + enPassantFile];
+        }
+        if (game.getTeamTurn() == ChessGame.TeamColor.WHITE) {
+            key ^= random[TURN_OFFSET];
+        }
+        return key;
+    }
+
+    // Polyglot only hashes the en passant file when a pawn of the side to move could actually capture there
+    private static int enPassantFile(ChessGame game) {
+        ChessPosition square = game.getEnPassantSquare();
+        if (square == null) {
+            return -1;
+        }
+        int target = ChessBoard.square(square);
+        if ((AttackTables.pawnAttacks(game.getTeamTurn().opponent(), target)
+                & game.getBoard().pieces(game.getTeamTurn(), ChessPiece.PieceType.PAWN)) == 0) {
+            return -1;
+        }
+        return target % 8;
+    }
+
+    private MoveList legalMoves(ChessGame game) {
+        MoveList moves = legalMoves.get();
+        game.legalMoves(game.getTeamTurn(), moves);
+        return moves;
+    }
+
+    // The entry's move in our encoding if it is one of the legal moves, otherwise 0
+    private int legalMove(ChessBoard board, MoveList moves, int entry) {
+        int code = entries.getShort(entry * ENTRY_BYTES + 8) & 0xFFFF;
+        int to = code & 0x3F;
+        int from = code >>> 6 & 0x3F;
+        ChessPiece.PieceType promotion = PROMOTIONS[Math.min(code >>> 12 & 0x7, 4)];
+        //Polyglot writes castling as the king capturing its own rook
+        if (board.pieceIndexAt(from) % 6 == ChessPiece.PieceType.KING.ordinal() && (from == 4 || from == 60)
+                && (to == from + 3 || to == from - 4)) {
+            to = to > from ? from + 2 : from - 2;
+        }
+        int move = Move.encode(from, to, promotion, 0);
+        for (int i = 0; i < moves.size(); i++) {
+            if (Move.sameMove(moves.get(i), move)) {
+                return moves.get(i);
+            }
+        }
+        return 0;
+    }
+
+    // Index of the first entry whose key is at least key
+    private int firstEntry(long key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(entryKey(middle), key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private long entryKey(int entry) {
+        return entries.getLong(entry * ENTRY_BYTES);
+    }
+
+    private int weight(int entry) {
+        return entries.getShort(entry * ENTRY_BYTES + 10) & 0xFFFF;
+    }
+}
@@ -0,0 +1,172 @@
+package chess;
+
+/**
+ * Standard Algebraic Notation, the move format of PGN: {@code e4}, {@code Nbd7}, {@code O-O}, {@code e8=Q+}
+ */
+final class San {
+
+    // FEN letter of each piece type, indexed by PieceType ordinal
+    private static final String TYPE_LETTERS = "KQBNRP";
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+    // For finding out whether a check is mate without going through the game's move cache
+    private static final ThreadLocal<MoveList> SCRATCH = ThreadLocal.withInitial(MoveList::new);
+
+    private San() {
+    }
+
+    /**
+     * Finds the legal move a SAN token names in the game's current position
+     *
+     * @return the move in the encoding described in {@link Move}, or -1 if it names no legal move or several
+     */
+    static int parse(ChessGame game, CharSequence san) {
+        int end = san.length();
+        while (end > 0 && "+#!?".indexOf(san.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        MoveList moves = game.turnMoves();
+        if (end >= 3 && (san.charAt(0) == 'O' || san.charAt(0) == '0')) {
+            boolean kingside = end == 3;
+            for (int i = 0; i < moves.size(); i++) {
+                int move = moves.get(i);
+                if ((move & Move.CASTLING) != 0 && (Move.to(move) > Move.from(move)) == kingside) {
+                    return move;
+                }
+            }
+            return -1;
+        }
+
+        ChessPiece.PieceType promotion = null;
+        if (end >= 3 && Character.isUpperCase(san.charAt(end - 1))) {
+            promotion = type(san.charAt(end - 1));
+            end -= san.charAt(end - 2) == '=' ? 2 : 1;
+            if (promotion == null) {
+                return -1;
+            }
+        }
+        if (end < 2) {
+            return -1;
+        }
+        int toFile = san.charAt(end - 2) - 'a';
+        int toRank = san.charAt(end - 1) - '1';
+        if (toFile < 0 || toFile > 7 || toRank < 0 || toRank > 7) {
+            return -1;
+        }
+        int to = toRank * 8 + toFile;
+
+        int start = 0;
+        ChessPiece.PieceType type = ChessPiece.PieceType.PAWN;
+        if (Character.isUpperCase(san.charAt(0))) {
+            type = type(san.charAt(0));
+            if (type == null) {
+                return -1;
+            }
+            start = 1;
+        }
+        //whatever is left between the piece and the destination is disambiguation and the capture mark
+        int fromFile = -1;
+        int fromRank = -1;
+        for (int i = start; i < end - 2; i++) {
+            char c = san.charAt(i);
+            if (c >= 'a' && c <= 'h') {
+                fromFile = c - 'a';
+            } else if (c >= '1' && c <= '8') {
+                fromRank = c - '1';
+            } else if (c != 'x' && c != ':') {
+                return -1;
+            }
+        }
+
+        ChessBoard board = game.getBoard();
+        int found = -1;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int from = Move.from(move);
+            if (Move.to(move) != to || Move.promotion(move) != promotion
+                    || board.pieceIndexAt(from) % 6 != type.ordinal() || (move & Move.CASTLING) != 0
+                    || (fromFile >= 0 && from % 8 != fromFile) || (fromRank >= 0 && from / 8 != fromRank)) {
+                continue;
+            }
+            if (found >= 0) {
+                return -1;
+            }
+            found = move;
+        }
+        return found;
+    }
+
+    /**
+     * Writes a legal move of the game's team to move in SAN, with the check or mate suffix
+     */
+    static void append(ChessGame game, int move, StringBuilder out) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        if ((move & Move.CASTLING) != 0) {
+            out.append(to > from ? "O-O" : "O-O-O");
+        } else {
+            ChessBoard board = game.getBoard();
+            int type = board.pieceIndexAt(from) % 6;
+            if (type == ChessPiece.PieceType.PAWN.ordinal()) {
+                if (Move.isCapture(move)) {
+                    out.append((char) ('a' + from % 8));
+                }
+            } else {
+                out.append(TYPE_LETTERS.charAt(type));
+                appendDisambiguation(game, move, type, out);
+            }
+            if (Move.isCapture(move)) {
+                out.append('x');
+            }
+            out.append((char) ('a' + to % 8)).append((char) ('1' + to / 8));
+            if (Move.promotion(move) != null) {
+                out.append('=').append(TYPE_LETTERS.charAt(Move.promotion(move).ordinal()));
+            }
+        }
+
+        //looked at on the board rather than through the game's cache, which keeps the current position's moves
+        game.doMove(move);
+        ChessGame.TeamColor opponent = game.getTeamTurn();
+        ChessBoard board = game.getBoard();
+        int king = board.kingSquare(opponent);
+        if (king >= 0 && board.isSquareAttacked(king, opponent.opponent())) {
+            MoveList replies = SCRATCH.get();
+            game.generateLegalMoves(opponent, replies);
+            out.append(replies.isEmpty() ? '#' : '+');
+        }
+        game.undoMove();
+    }
+
+    // Adds the file, rank or both of the from square when another piece of the same type can reach the square
+    private static void appendDisambiguation(ChessGame game, int move, int type, StringBuilder out) {
+        ChessBoard board = game.getBoard();
+        MoveList moves = game.turnMoves();
+        int from = Move.from(move);
+        boolean ambiguous = false;
+        boolean sameFile = false;
+        boolean sameRank = false;
+        for (int i = 0; i < moves.size(); i++) {
+            int other = moves.get(i);
+            int otherFrom = Move.from(other);
+            if (Move.to(other) == Move.to(move) && otherFrom != from && board.pieceIndexAt(otherFrom) % 6 == type) {
+                ambiguous = true;
+                sameFile |= otherFrom % 8 == from % 8;
+                sameRank |= otherFrom / 8 == from / 8;
+            }
+        }
+        if (!ambiguous) {
+            return;
+        }
+        if (!sameFile) {
+            out.append((char) ('a' + from % 8));
+        } else if (!sameRank) {
+            out.append((char) ('1' + from / 8));
+        } else {
+            out.append((char) ('a' + from % 8)).append((char) ('1' + from / 8));
+        }
+    }
+
+    private static ChessPiece.PieceType type(char letter) {
+        int index = TYPE_LETTERS.indexOf(letter);
+        return index < 0 ? null : TYPES[index];
+    }
+}
@@ -0,0 +1,190 @@
+package chess;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size, off-heap cache of search results keyed by Zobrist position key, shared by search threads
+ * without locking.
+ */
+public class TranspositionTable {
+
+    /**
+     * Bound for a score that is at least the stored value (the search failed high)
+     */
+    public static final int LOWER_BOUND = 1;
+    /**
+     * Bound for a score that is at most the stored value (the search failed low)
+     */
+    public static final int UPPER_BOUND = 2;
+    /**
+     * Bound for an exact score
+     */
+    public static final int EXACT = 3;
+
+    // A slot is the data long and the key XORed with it, so a slot torn by two writers fails the key check
+    private static final int ENTRY_BYTES = 16;
+    private static final long BYTES_PER_MB = 1L << 20;
+
+    // Layout of an entry's data long; 0 means the slot is empty because no stored entry has a bound of 0
+    private static final int MOVE_BITS = 21;
+    private static final int SCORE_SHIFT = MOVE_BITS;
+    private static final int DEPTH_SHIFT = SCORE_SHIFT + 16;
+    private static final int BOUND_SHIFT = DEPTH_SHIFT + 8;
+    private static final int GENERATION_SHIFT = BOUND_SHIFT + 2;
+
+    // Reads and writes whole longs atomically, so each half of a slot is either all old or all new
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final ByteBuffer entries;
+    private final long indexMask;
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+    private volatile int generation;
+
+    /**
+     * @param sizeMb how much memory to use, in megabytes (1 to 1024). The table holds the largest power
+     *               of two number of 16 byte entries that fits.
+     */
+    public TranspositionTable(int sizeMb) {
+        if (sizeMb < 1 || sizeMb > 1024) {
+            throw new IllegalArgumentException("Transposition table size must be 1 to 1024 MB, got " + sizeMb);
+        }
+        long slots = Long.highestOneBit(sizeMb * BYTES_PER_MB / ENTRY_BYTES);
+        indexMask = slots - 1;
+        entries = ByteBuffer.allocateDirect((int) (slots * ENTRY_BYTES)).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Looks a position up
+     *
+     * @param key the position's Zobrist key
+     * @return the stored entry, to be read with {@link #move}, {@link #score}, {@link #depth} and
+     * {@link #bound}, or 0 if the position isn't in the table
+     */
+    public long probe(long key) {
+        probes.increment();
+        int offset = offset(key);
+        long data = (long) LONGS.getOpaque(entries, offset + 8);
+        long check = (long) LONGS.getOpaque(entries, offset);
+        if (data == 0) {
+            return 0;
+        }
+        if ((check ^ data) != key) {
+            collisions.increment();
+            return 0;
+        }
+        hits.increment();
+        return data;
+    }
+
+    /**
+     * Stores a search result, unless the slot holds a deeper result from the current search
+     *
+     * @param key   the position's Zobrist key
+     * @param depth how deep the position was searched, 0 to 255
+     * @param bound {@link #LOWER_BOUND}, {@link #UPPER_BOUND} or {@link #EXACT}
+     * @param score the score, which has to fit in 16 signed bits
+     * @param move  the best move found in the encoding described in {@link Move}, or 0 for none
+     */
+    public void store(long key, int depth, int bound, int score, int move) {
+        int offset = offset(key);
+        long oldData = (long) LONGS.getOpaque(entries, offset + 8);
+        long oldKey = (long) LONGS.getOpaque(entries, offset) ^ oldData;
+        int current = generation & 0xFF;
+        if (oldData != 0) {
+            if (oldKey == key) {
+                //a new result for the same position is always fresher, but keep the old best move if there's no new one
+                if (move == 0) {
+                    move = move(oldData);
+                }
+            } else if (generation(oldData) == current && depth(oldData) > depth) {
+                return;
+            }
+        }
+        long data = (move & ((1L << MOVE_BITS) - 1))
+                | (long) (score & 0xFFFF) << SCORE_SHIFT
+                | (long) (depth & 0xFF) << DEPTH_SHIFT
+                | (long) bound << BOUND_SHIFT
+                | (long) current << GENERATION_SHIFT;
+        LONGS.setOpaque(entries, offset + 8, data);
+        LONGS.setOpaque(entries, offset, key ^ data);
+    }
+
+    /**
+     * Marks the start of a new search. Entries from earlier searches stay usable, but any new entry may
+     * replace them regardless of depth.
+     */
+    public void newSearch() {
+        generation++;
+    }
+
+    /**
+     * Empties the table and resets the counters
+     */
+    public void clear() {
+        for (int offset = 0; offset < entries.capacity(); offset += 8) {
+            LONGS.setOpaque(entries, offset, 0L);
+        }
+        probes.reset();
+        hits.reset();
+        collisions.reset();
+    }
+
+    /**
+     * @return how many entries the table can hold
+     */
+    public long capacity() {
+        return indexMask + 1;
+    }
+
+    /**
+     * @return how many probes there have been
+     */
+    public long probes() {
+        return probes.sum();
+    }
+
+    /**
+     * @return how many probes found their position
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return how many probes found a different position (or a torn write) in the slot
+     */
+    public long collisions() {
+        return collisions.sum();
+    }
+
+    public static int move(long entry) {
+        return (int) (entry & ((1L << MOVE_BITS) - 1));
+    }
+
+    public static int score(long entry) {
+        return (short) (entry >>> SCORE_SHIFT);
+    }
+
+    public static int depth(long entry) {
+        return (int) (entry >>> DEPTH_SHIFT & 0xFF);
+    }
+
+    public static int bound(long entry) {
+        return (int) (entry >>> BOUND_SHIFT & 0x3);
+    }
+
+    private static int generation(long entry) {
+        return (int) (entry >>> GENERATION_SHIFT & 0xFF);
+    }
+
+    // The low bits of the key pick the slot; the XOR check covers the rest
+    private int offset(long key) {
+        return (int) (key & indexMask) * ENTRY_BYTES;
+    }
+}
@@ -0,0 +1,79 @@
+package chess;
+
+/**
+ * Random keys for Zobrist hashing. A position's key is the XOR of one key per piece on its square,
+ * plus the side key when black is to move, so a move only has to XOR out what left a square and
+ * XOR in what arrived instead of rehashing the whole board. Castling rights and a capturable en passant
+ * square get keys of their own, so positions that only differ in those don't share a key.
+ */
+final class Zobrist {
+
+    // Indexed by [ChessBoard piece index][square]
+    private static final long[][] PIECE_SQUARE = new long[12][64];
+    private static final long BLACK_TO_MOVE;
+    // Indexed by the castling rights bitmask, each entry the XOR of the keys of the rights it holds
+    private static final long[] CASTLING = new long[16];
+    // Indexed by the en passant square's column
+    private static final long[] EN_PASSANT = new long[8];
+
+    static {
+        // Fixed seed so keys are the same from run to run and can be stored or compared across processes
+        long seed = 0x4368657373323530L;
+        for (int index = 0; index < 12; index++) {
+            for (int square = 0; square < 64; square++) {
+                seed += 0x9E3779B97F4A7C15L;
+                PIECE_SQUARE[index][square] = mix(seed);
+            }
+        }
+        seed += 0x9E3779B97F4A7C15L;
+        BLACK_TO_MOVE = mix(seed);
+        long[] rights = new long[4];
+        for (int right = 0; right < 4; right++) {
+            seed += 0x9E3779B97F4A7C15L;
+            rights[right] = mix(seed);
+        }
+        for (int mask = 0; mask < 16; mask++) {
+            for (int right = 0; right < 4; right++) {
+                if ((mask & 1 << right) != 0) {
+                    CASTLING[mask] ^= rights[right];
+                }
+            }
+        }
+        for (int col = 0; col < 8; col++) {
+            seed += 0x9E3779B97F4A7C15L;
+            EN_PASSANT[col] = mix(seed);
+        }
+    }
+
+    private Zobrist() {
+    }
+
+    static long piece(int index, int square) {
+        return PIECE_SQUARE[index][square];
+    }
+
+    /**
+     * @return the key to XOR in for the side to move (zero for white)
+     */
+    static long side(ChessGame.TeamColor teamTurn) {
+        return teamTurn == ChessGame.TeamColor.BLACK ? BLACK_TO_MOVE : 0L;
+    }
+
+    /**
+     * @param rights a castling rights bitmask as in ChessGame
+     */
+    static long castling(int rights) {
+        return CASTLING[rights];
+    }
+
+    static long enPassant(int square) {
+        return EN_PASSANT[square % 8];
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -1,7 +1,62 @@
 package model;
 
 import chess.ChessGame;
+import chess.ChessJson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.IOException;
+
+@JsonAdapter(GameData.Adapter.class)
 public record GameData(int gameID, String whiteUsername, String blackUsername,
                        String gameName, ChessGame game) {
+
+    // Writes the fields by name without reflection; the game goes through the chess adapter
+    static final class Adapter extends TypeAdapter<GameData> {
+
+        @Override
+        public void write(JsonWriter out, GameData data) throws IOException {
+            out.beginObject();
+            out.name("gameID").value(data.gameID());
+            out.name("whiteUsername").value(data.whiteUsername());
+            out.name("blackUsername").value(data.blackUsername());
+            out.name("gameName").value(data.gameName());
+            out.name("game");
+            ChessJson.GAME.write(out, data.game());
+            out.endObject();
+        }
+
+        @Override
+        public GameData read(JsonReader in) throws IOException {
+            int gameID = 0;
+            String whiteUsername = null;
+            String blackUsername = null;
+            String gameName = null;
+            ChessGame game = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "gameID" -> gameID = in.nextInt();
+                    case "whiteUsername" -> whiteUsername = nextStringOrNull(in);
+                    case "blackUsername" -> blackUsername = nextStringOrNull(in);
+                    case "gameName" -> gameName = nextStringOrNull(in);
+                    case "game" -> game = ChessJson.GAME.read(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return new GameData(gameID, whiteUsername, blackUsername, gameName, game);
+        }
+
+        private static String nextStringOrNull(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            return in.nextString();
+        }
+    }
 }
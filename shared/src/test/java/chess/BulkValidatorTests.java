@@ -0,0 +1,71 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Checks replaying lists of games in parallel: results in input order, illegal moves found, and how games end.
+ */
+public class BulkValidatorTests {
+
+    private static final List<ChessMove> FOOLS_MATE = moves("f2f3", "e7e5", "g2g4", "d8h4");
+    private static final List<ChessMove> ILLEGAL = moves("e2e4", "e7e5", "e1e3");
+    private static final List<ChessMove> AFTER_MATE = moves("f2f3", "e7e5", "g2g4", "d8h4", "a2a3");
+    private static final List<ChessMove> REPETITION = moves("g1f3", "g8f6", "f3g1", "f6g8", "g1f3", "g8f6",
+            "f3g1", "f6g8");
+
+    @Test
+    @DisplayName("Replay One Game")
+    public void replayOneGame() {
+        BulkValidator.Result mate = BulkValidator.replay(FOOLS_MATE);
+        Assertions.assertTrue(mate.valid(), "Every move is legal");
+        Assertions.assertEquals(4, mate.plies(), "Every move should be played");
+        Assertions.assertEquals(BulkValidator.Outcome.CHECKMATE, mate.outcome(), "Fool's mate");
+
+        BulkValidator.Result illegal = BulkValidator.replay(ILLEGAL);
+        Assertions.assertEquals(2, illegal.firstIllegalPly(), "The king can't move two squares forward");
+        Assertions.assertEquals(BulkValidator.Outcome.IN_PROGRESS, illegal.outcome(), "The game goes on");
+
+        Assertions.assertEquals(4, BulkValidator.replay(AFTER_MATE).firstIllegalPly(),
+                "No move is legal after mate");
+        Assertions.assertEquals(BulkValidator.Outcome.THREEFOLD_REPETITION,
+                BulkValidator.replay(REPETITION).outcome(), "The start position is seen three times");
+    }
+
+    @Test
+    @DisplayName("Results In Input Order")
+    public void resultsInInputOrder() {
+        List<List<ChessMove>> games = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            games.add(List.of(FOOLS_MATE, ILLEGAL, AFTER_MATE, REPETITION).get(i % 4));
+        }
+        ForkJoinPool pool = new ForkJoinPool(3);
+        BulkValidator.Report report;
+        try {
+            report = BulkValidator.validate(games, pool);
+        } finally {
+            pool.shutdown();
+        }
+        Assertions.assertEquals(400, report.games(), "Every game should have a result");
+        Assertions.assertEquals(200, report.invalidGames(), "Half the games have an illegal move");
+        Assertions.assertEquals(100L * (4 + 2 + 4 + 8), report.moves(), "Wrong number of moves played");
+        for (int i = 0; i < games.size(); i++) {
+            Assertions.assertEquals(BulkValidator.replay(games.get(i)), report.results().get(i),
+                    "Result " + i + " should match its game");
+        }
+    }
+
+    private static List<ChessMove> moves(String... moves) {
+        List<ChessMove> parsed = new ArrayList<>();
+        for (String move : moves) {
+            parsed.add(new ChessMove(new ChessPosition(move.charAt(1) - '0', move.charAt(0) - 'a' + 1),
+                    new ChessPosition(move.charAt(3) - '0', move.charAt(2) - 'a' + 1), null));
+        }
+        return List.copyOf(parsed);
+    }
+}
@@ -0,0 +1,78 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the search finds forced mates, scores finished games, and picks the same move every time it is
+ * given the same node budget.
+ */
+public class ChessEngineTests {
+
+    private static final String MIDGAME = "r1bqk2r/pppp1ppp/2n2n2/2b1p3/2B1P3/3P1N2/PPP2PPP/RNBQK2R w KQkq - 1 5";
+
+    @Test
+    @DisplayName("Mate In One")
+    public void mateInOne() {
+        ChessEngine.Result result = engine().search(Fen.parse("6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - 0 1"),
+                ChessEngine.Limits.depth(4));
+        Assertions.assertEquals(move("d1d8"), result.bestMove(), "Should find the back rank mate");
+        Assertions.assertEquals(ChessEngine.MATE - 1, result.score(), "Mate in one should score MATE - 1");
+    }
+
+    @Test
+    @DisplayName("Mate In Two")
+    public void mateInTwo() {
+        //the queen sacrifice forces the bishop off e7 for Re8 mate
+        ChessEngine.Result result = engine().search(
+                Fen.parse("r1b2k1r/ppp1bppp/8/1B1Q4/5q2/2P5/PPP2PPP/R3R1K1 w - - 1 10"), ChessEngine.Limits.depth(6));
+        Assertions.assertEquals(move("d5d8"), result.bestMove(), "Should find the queen sacrifice");
+        Assertions.assertEquals(ChessEngine.MATE - 3, result.score(), "Mate in two should score MATE - 3");
+    }
+
+    @Test
+    @DisplayName("Finished Games")
+    public void finishedGames() {
+        ChessEngine.Result mated = engine().search(Fen.parse("3R2k1/5ppp/8/8/8/8/5PPP/6K1 b - - 1 1"),
+                ChessEngine.Limits.depth(4));
+        Assertions.assertNull(mated.bestMove(), "A mated side has no move");
+        Assertions.assertEquals(-ChessEngine.MATE, mated.score(), "Being mated should score -MATE");
+
+        ChessEngine.Result stalemate = engine().search(Fen.parse("k7/8/1Q6/8/8/8/8/7K b - - 0 1"),
+                ChessEngine.Limits.depth(4));
+        Assertions.assertNull(stalemate.bestMove(), "A stalemated side has no move");
+        Assertions.assertEquals(0, stalemate.score(), "Stalemate should score as a draw");
+    }
+
+    @Test
+    @DisplayName("Same Move For The Same Budget")
+    public void sameMoveForTheSameBudget() {
+        ChessGame position = Fen.parse(MIDGAME);
+        ChessEngine.Result first = engine().search(position, ChessEngine.Limits.nodes(20_000));
+        ChessEngine.Result second = engine().search(position, ChessEngine.Limits.nodes(20_000));
+        Assertions.assertEquals(first.bestMove(), second.bestMove(), "Same budget should give the same move");
+        Assertions.assertEquals(first.score(), second.score(), "Same budget should give the same score");
+        Assertions.assertEquals(first.depth(), second.depth(), "Same budget should reach the same depth");
+        Assertions.assertEquals(MIDGAME, Fen.toFen(position), "Searching should not change the game");
+    }
+
+    @Test
+    @DisplayName("Time Limit")
+    public void timeLimit() {
+        ChessGame position = Fen.parse(MIDGAME);
+        ChessEngine.Result result = engine().search(position, ChessEngine.Limits.millis(100));
+        Assertions.assertTrue(result.nanos() < 2_000_000_000L, "The search should stop near its time limit");
+        Assertions.assertDoesNotThrow(() -> position.makeMove(result.bestMove()), "The move should be legal");
+    }
+
+    // An engine with a fresh table and no bitbases, so results only depend on the position and the limits
+    private static ChessEngine engine() {
+        return new ChessEngine(new TranspositionTable(4), null);
+    }
+
+    private static ChessMove move(String move) {
+        return new ChessMove(new ChessPosition(move.charAt(1) - '0', move.charAt(0) - 'a' + 1),
+                new ChessPosition(move.charAt(3) - '0', move.charAt(2) - 'a' + 1), null);
+    }
+}
@@ -0,0 +1,74 @@
+package chess;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import model.GameData;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that games, boards, pieces and GameData survive a round trip through JSON, with the shared Gson and
+ * with a plain one that only finds the adapters through the annotations.
+ */
+public class ChessJsonTests {
+
+    private static final String MIDGAME = "r1bqk2r/pppp1ppp/2n2n2/2b1p3/2B1P3/3P1N2/PPP2PPP/RNBQK2R w KQkq - 1 5";
+
+    @Test
+    @DisplayName("Game Round Trip")
+    public void gameRoundTrip() {
+        ChessGame game = Fen.parse(MIDGAME);
+        for (Gson gson : new Gson[]{ChessJson.GSON, new Gson()}) {
+            String json = gson.toJson(game);
+            Assertions.assertEquals("{\"fen\":\"" + MIDGAME + "\"}", json, "Wrong JSON for a game");
+            ChessGame read = gson.fromJson(json, ChessGame.class);
+            Assertions.assertEquals(game, read, "Game should survive the round trip");
+            Assertions.assertEquals(MIDGAME, Fen.toFen(read), "Move counters should survive the round trip");
+        }
+    }
+
+    @Test
+    @DisplayName("Board And Piece Round Trip")
+    public void boardAndPieceRoundTrip() {
+        Gson gson = new Gson();
+        ChessBoard board = Fen.parse(MIDGAME).getBoard();
+        String json = gson.toJson(board);
+        Assertions.assertEquals("\"r1bqk2r/pppp1ppp/2n2n2/2b1p3/2B1P3/3P1N2/PPP2PPP/RNBQK2R\"", json,
+                "Wrong JSON for a board");
+        Assertions.assertEquals(board, gson.fromJson(json, ChessBoard.class), "Board should survive the round trip");
+
+        ChessPiece piece = new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT);
+        Assertions.assertEquals("\"n\"", gson.toJson(piece), "Wrong JSON for a piece");
+        Assertions.assertEquals(piece, gson.fromJson("\"n\"", ChessPiece.class), "Piece should survive the round trip");
+    }
+
+    @Test
+    @DisplayName("Game Data Round Trip")
+    public void gameDataRoundTrip() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        GameData data = new GameData(7, "white", null, "friendly", game);
+
+        Gson gson = new Gson();
+        String json = gson.toJson(data);
+        GameData read = gson.fromJson(json, GameData.class);
+        Assertions.assertEquals(data, read, "GameData should survive the round trip");
+        Assertions.assertNull(read.blackUsername(), "Missing player should stay null");
+        Assertions.assertEquals(1, read.game().getHistoryLength(), "The game's history should come along");
+        Assertions.assertEquals(read, ChessJson.GSON.fromJson(json, GameData.class), "Both Gsons should agree");
+    }
+
+    @Test
+    @DisplayName("Bad JSON")
+    public void badJson() {
+        Gson gson = new Gson();
+        Assertions.assertThrows(JsonSyntaxException.class, () -> gson.fromJson("{}", ChessGame.class));
+        Assertions.assertThrows(JsonSyntaxException.class,
+                () -> gson.fromJson("{\"fen\":\"8/8/8 w - - 0 1\"}", ChessGame.class));
+        Assertions.assertThrows(JsonSyntaxException.class, () -> gson.fromJson("\"x\"", ChessPiece.class));
+        Assertions.assertThrows(JsonSyntaxException.class,
+                () -> gson.fromJson("{\"fen\":\"" + Fen.START + "\",\"moves\":\"e2e5\",\"ply\":1,"
+                        + "\"checkpoints\":[{\"ply\":0,\"fen\":\"" + Fen.START + "\"}]}", ChessGame.class));
+    }
+}
@@ -0,0 +1,77 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the solved endings against well known wins and draws, and that the engine plays them out.
+ */
+public class EndgameBitbasesTests {
+
+    private static final EndgameBitbases BITBASES = EndgameBitbases.build();
+
+    @Test
+    @DisplayName("Queen And Rook Endings")
+    public void queenAndRookEndings() {
+        assertProbe(EndgameBitbases.WIN, "8/8/8/4k3/8/8/8/1Q2K3 w - - 0 1");
+        assertProbe(EndgameBitbases.LOSS, "8/8/8/4k3/8/8/8/1Q2K3 b - - 0 1");
+        assertProbe(EndgameBitbases.LOSS, "8/8/8/4k3/8/8/8/R3K3 b - - 0 1");
+        //the lone king takes the undefended queen
+        assertProbe(EndgameBitbases.DRAW, "8/8/8/8/8/8/3kQ3/7K b - - 0 1");
+        //and the colours can be the other way around
+        assertProbe(EndgameBitbases.WIN, "1q2k3/8/8/8/4K3/8/8/8 b - - 0 1");
+    }
+
+    @Test
+    @DisplayName("King And Pawn Endings")
+    public void kingAndPawnEndings() {
+        //king on the sixth in front of its pawn wins whoever moves
+        assertProbe(EndgameBitbases.WIN, "4k3/8/4K3/4P3/8/8/8/8 w - - 0 1");
+        assertProbe(EndgameBitbases.LOSS, "4k3/8/4K3/4P3/8/8/8/8 b - - 0 1");
+        //stalemate
+        assertProbe(EndgameBitbases.DRAW, "4k3/4P3/4K3/8/8/8/8/8 b - - 0 1");
+        //rook pawn with the defender in the corner
+        assertProbe(EndgameBitbases.DRAW, "7k/8/6K1/7P/8/8/8/8 w - - 0 1");
+        //the defender is too far from the pawn
+        assertProbe(EndgameBitbases.WIN, "8/8/8/8/P7/8/8/5k1K w - - 0 1");
+    }
+
+    @Test
+    @DisplayName("Positions Not Covered")
+    public void positionsNotCovered() {
+        assertProbe(EndgameBitbases.NOT_COVERED, Fen.START);
+        assertProbe(EndgameBitbases.NOT_COVERED, "8/8/8/4k3/8/8/8/BN2K3 w - - 0 1");
+        //a lone minor piece can't mate
+        assertProbe(EndgameBitbases.DRAW, "8/8/8/4k3/8/8/8/B3K3 w - - 0 1");
+
+        ChessBoard board = new ChessBoard();
+        board.addPiece(new ChessPosition(1, 1), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+        board.addPiece(new ChessPosition(8, 8), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+        board.addPiece(new ChessPosition(4, 4), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.QUEEN));
+        Assertions.assertEquals(EndgameBitbases.NOT_COVERED, BITBASES.probe(board, ChessGame.TeamColor.WHITE),
+                "A board without a black king should not be probed");
+    }
+
+    @Test
+    @DisplayName("Engine Uses Bitbases")
+    public void engineUsesBitbases() {
+        ChessEngine engine = new ChessEngine(new TranspositionTable(1), BITBASES);
+        ChessEngine.Result draw = engine.search(Fen.parse("7k/8/6K1/7P/8/8/8/8 w - - 0 1"),
+                ChessEngine.Limits.depth(8));
+        Assertions.assertEquals(0, draw.score(), "Drawn rook pawn ending should score as a draw");
+
+        ChessEngine.Result win = engine.search(Fen.parse("4k3/8/4K3/4P3/8/8/8/8 w - - 0 1"),
+                ChessEngine.Limits.depth(6));
+        Assertions.assertTrue(win.score() > 0, "Won pawn ending should score as a win");
+        ChessGame after = Fen.parse("4k3/8/4K3/4P3/8/8/8/8 w - - 0 1");
+        Assertions.assertDoesNotThrow(() -> after.makeMove(win.bestMove()), "Engine move should be legal");
+        Assertions.assertEquals(EndgameBitbases.LOSS, BITBASES.probe(after.getBoard(), after.getTeamTurn()),
+                "Engine should keep the win");
+    }
+
+    private static void assertProbe(int expected, String fen) {
+        ChessGame game = Fen.parse(fen);
+        Assertions.assertEquals(expected, BITBASES.probe(game.getBoard(), game.getTeamTurn()), "Wrong result for " + fen);
+    }
+}
@@ -0,0 +1,95 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Checks reading and writing FEN, from strings, parts of larger text and ASCII bytes, and rejecting bad input.
+ */
+public class FenTests {
+
+    private static final String[] POSITIONS = {
+            Fen.START,
+            "rnbqkbnr/pppp1ppp/8/4p3/4P3/8/PPPP1PPP/RNBQKBNR w KQkq e6 0 2",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r2q1rk1/pP1p2pp/Q4n2/bbp1p3/Np6/1B3NBn/pPPP1PPP/R3K2R b Kq - 0 1",
+            "4k3/8/8/8/8/8/8/4K3 b - - 57 143",
+    };
+
+    @Test
+    @DisplayName("Round Trip")
+    public void roundTrip() {
+        for (String fen : POSITIONS) {
+            Assertions.assertEquals(fen, Fen.toFen(Fen.parse(fen)), "FEN should survive the round trip");
+        }
+    }
+
+    @Test
+    @DisplayName("Matches Played Game")
+    public void matchesPlayedGame() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        game.makeMove(new ChessMove(new ChessPosition(7, 5), new ChessPosition(5, 5), null));
+        ChessGame parsed = Fen.parse(POSITIONS[1]);
+        Assertions.assertEquals(game, parsed, "Parsed game should equal the played one");
+        Assertions.assertEquals(game.getZobristKey(), parsed.getZobristKey(), "Keys should match");
+        Assertions.assertEquals(POSITIONS[1], Fen.toFen(game), "Played game should write the same FEN");
+    }
+
+    @Test
+    @DisplayName("Load In Place")
+    public void loadInPlace() {
+        String lines = POSITIONS[2] + "\n" + POSITIONS[3] + "\n";
+        ChessGame game = new ChessGame();
+        ChessBoard board = game.getBoard();
+        int end = lines.indexOf('\n');
+        Fen.load(lines, end + 1, lines.length() - 1, game);
+        Assertions.assertEquals(POSITIONS[3], Fen.toFen(game), "Wrong position from part of the text");
+        Assertions.assertSame(board, game.getBoard(), "The board should be refilled in place");
+
+        byte[] ascii = lines.getBytes(StandardCharsets.US_ASCII);
+        Fen.load(ascii, 0, end, game);
+        Assertions.assertEquals(POSITIONS[2], Fen.toFen(game), "Wrong position from bytes");
+
+        ChessBoard placed = new ChessBoard();
+        Fen.loadBoard("8/8/8/8/8/8/8/4K2k", placed);
+        Assertions.assertEquals(new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING),
+                placed.getPiece(new ChessPosition(1, 8)), "Wrong piece from the placement");
+    }
+
+    @Test
+    @DisplayName("Bad Input")
+    public void badInput() {
+        String[] bad = {
+                "",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/9/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "rnbqkbnr/ppppxppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR x KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq e9 0 1",
+        };
+        for (String fen : bad) {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> Fen.parse(fen), fen);
+        }
+    }
+
+    @Test
+    @DisplayName("Bad Input Leaves Game")
+    public void badInputLeavesGame() {
+        ChessGame game = Fen.parse(POSITIONS[1]);
+        long version = game.getVersion();
+        //the placement is fine, so a loader writing in place would already have changed the board
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> Fen.load("8/8/8/8/8/8/8/4K2k x - - 0 1", game));
+        Assertions.assertEquals(POSITIONS[1], Fen.toFen(game), "A failed load should leave the position alone");
+        Assertions.assertEquals(POSITIONS[1], Fen.toFen(game.snapshot().toGame()), "And the snapshot");
+        Assertions.assertEquals(version, game.getVersion(), "A failed load should not change the version");
+
+        Fen.load(POSITIONS[2], game);
+        Assertions.assertEquals(version + 1, game.getVersion(), "A load should be one change");
+    }
+}
@@ -0,0 +1,123 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+/**
+ * Checks the compact binary form of a game: round trips, its size, writing into a shared buffer, and rejecting
+ * bytes that aren't an encoded game.
+ */
+public class GameCodecTests {
+
+    private static final String[] POSITIONS = {
+            Fen.START,
+            "rnbqkbnr/pppp1ppp/8/4p3/4P3/8/PPPP1PPP/RNBQKBNR w KQkq e6 0 2",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "4k3/8/8/8/8/8/8/4K3 b - - 1000 20000",
+    };
+
+    @Test
+    @DisplayName("Round Trip")
+    public void roundTrip() {
+        for (String fen : POSITIONS) {
+            byte[] encoded = GameCodec.encode(Fen.parse(fen));
+            Assertions.assertEquals(GameCodec.VERSION, encoded[0], "A position alone should use version 1");
+            Assertions.assertEquals(fen, Fen.toFen(GameCodec.decode(encoded)), "Position should survive the trip");
+        }
+        Assertions.assertEquals(37, GameCodec.encode(new ChessGame()).length, "The start should take 37 bytes");
+    }
+
+    @Test
+    @DisplayName("Setters Round Trip")
+    public void settersRoundTrip() {
+        ChessGame game = Fen.parse("rnbqkbnr/ppp1pppp/8/8/3pP3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 3");
+        game.setEnPassantSquare(new ChessPosition(3, 5));
+        game.setHalfmoveClock(70000);
+        game.setFullmoveNumber(300);
+        ChessGame decoded = GameCodec.decode(GameCodec.encode(game));
+        Assertions.assertEquals(Fen.toFen(game), Fen.toFen(decoded), "Values set through the setters should survive");
+        Assertions.assertEquals(game.getEnPassantSquare(), decoded.getEnPassantSquare(), "En passant square");
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> game.setHalfmoveClock(-1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> game.setFullmoveNumber(-1));
+        //only the file is encoded, so a square off the row the turn implies would come back elsewhere
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> game.setEnPassantSquare(new ChessPosition(6, 5)));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> game.setEnPassantSquare(new ChessPosition(4, 5)));
+        Assertions.assertEquals(70000, game.getHalfmoveClock(), "A rejected value should leave the game alone");
+        Assertions.assertEquals(new ChessPosition(3, 5), game.getEnPassantSquare(), "And the en passant square");
+    }
+
+    @Test
+    @DisplayName("Shared Buffer")
+    public void sharedBuffer() {
+        byte[] buffer = new byte[POSITIONS.length * GameCodec.MAX_BYTES];
+        int[] offsets = new int[POSITIONS.length + 1];
+        for (int i = 0; i < POSITIONS.length; i++) {
+            offsets[i + 1] = offsets[i] + GameCodec.encode(Fen.parse(POSITIONS[i]), buffer, offsets[i]);
+        }
+        ChessGame game = new ChessGame();
+        for (int i = POSITIONS.length - 1; i >= 0; i--) {
+            int length = GameCodec.decode(buffer, offsets[i], offsets[i + 1] - offsets[i], game);
+            Assertions.assertEquals(offsets[i + 1] - offsets[i], length, "Decoding should use every byte written");
+            Assertions.assertEquals(POSITIONS[i], Fen.toFen(game), "Wrong position from the shared buffer");
+        }
+    }
+
+    @Test
+    @DisplayName("History Version")
+    public void historyVersion() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        byte[] encoded = GameCodec.encode(game);
+        Assertions.assertEquals(GameCodec.HISTORY_VERSION, encoded[0], "A game with moves should use version 2");
+        ChessGame decoded = GameCodec.decode(encoded);
+        Assertions.assertEquals(game, decoded, "Position should survive the trip");
+        Assertions.assertEquals(1, decoded.getHistoryLength(), "The move should come along");
+    }
+
+    @Test
+    @DisplayName("Bad Bytes")
+    public void badBytes() {
+        byte[] encoded = GameCodec.encode(new ChessGame());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> GameCodec.decode(new byte[10]));
+
+        byte[] badVersion = encoded.clone();
+        badVersion[0] = 9;
+        Assertions.assertThrows(IllegalArgumentException.class, () -> GameCodec.decode(badVersion));
+
+        byte[] badPiece = encoded.clone();
+        badPiece[1] = (byte) 0xDD;
+        Assertions.assertThrows(IllegalArgumentException.class, () -> GameCodec.decode(badPiece));
+
+        byte[] truncated = encoded.clone();
+        truncated[encoded.length - 1] = (byte) 0x80;
+        Assertions.assertThrows(IllegalArgumentException.class, () -> GameCodec.decode(truncated));
+    }
+
+    @Test
+    @DisplayName("Bad Bytes Leave Game")
+    public void badBytesLeaveGame() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        byte[] encoded = GameCodec.encode(game);
+        ChessGame target = Fen.parse(POSITIONS[1]);
+        long version = target.getVersion();
+
+        //the position is fine but the history is cut short
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length - 1);
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> GameCodec.decode(truncated, 0, truncated.length, target));
+        Assertions.assertEquals(POSITIONS[1], Fen.toFen(target), "A failed decode should leave the position alone");
+        Assertions.assertEquals(version, target.getVersion(), "A failed decode should not change the version");
+
+        GameCodec.decode(encoded, 0, encoded.length, target);
+        Assertions.assertEquals(game, target, "Position after a good decode");
+        Assertions.assertEquals(1, target.getHistoryLength(), "History after a good decode");
+        Assertions.assertEquals(version + 1, target.getVersion(), "A decode should be one change");
+    }
+}
@@ -0,0 +1,130 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks going back and forward through a game's move history, and that the history survives setters and
+ * saving the game.
+ */
+public class GameHistoryTests {
+
+    // A knight shuffle that repeats the starting position every four plies
+    private static final String[] SHUFFLE = {"g1f3", "g8f6", "f3g1", "f6g8"};
+
+    @Test
+    @DisplayName("Go Back And Forward")
+    public void goBackAndForward() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        String[] fens = playLongGame(game);
+
+        for (int ply : new int[]{0, 5, 33, 70, 31, 32, fens.length - 1, 64, 1}) {
+            game.goToPly(ply);
+            Assertions.assertEquals(ply, game.getCurrentPly(), "Wrong current ply");
+            Assertions.assertEquals(fens[ply], Fen.toFen(game), "Wrong position at ply " + ply);
+        }
+        Assertions.assertEquals(fens.length - 1, game.getHistoryLength(), "Going back should keep the history");
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> game.goToPly(fens.length));
+
+        game.goToPly(40);
+        long version = game.getVersion();
+        game.goToPly(10);
+        Assertions.assertEquals(version + 1, game.getVersion(), "Going back to a checkpoint should be one change");
+        game.makeMove(move("a2a3"));
+        Assertions.assertEquals(11, game.getHistoryLength(), "A new move should replace the moves after it");
+    }
+
+    @Test
+    @DisplayName("Rules Setters Keep History")
+    public void rulesSettersKeepHistory() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        String[] fens = playLongGame(game);
+        game.goToPly(40);
+        game.setHalfmoveClock(7);
+        game.setCastlingRights(0);
+        Assertions.assertEquals(40, game.getHistoryLength(), "Setters should only drop moves after the current ply");
+
+        game.makeMove(move("a2a3"));
+        String edited = Fen.toFen(game);
+        game.goToPly(3);
+        Assertions.assertEquals(fens[3], Fen.toFen(game), "Going back past a setter should give the played game");
+        game.goToPly(41);
+        Assertions.assertEquals(edited, Fen.toFen(game), "Going forward should bring back the rules set");
+
+        game.setTeamTurn(ChessGame.TeamColor.WHITE);
+        Assertions.assertEquals(0, game.getHistoryLength(), "Setting the turn should start a new history");
+    }
+
+    @Test
+    @DisplayName("Codec Keeps History")
+    public void codecKeepsHistory() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        String[] fens = playLongGame(game);
+        game.goToPly(50);
+
+        ChessGame decoded = GameCodec.decode(GameCodec.encode(game));
+        Assertions.assertEquals(game, decoded, "Position should survive the round trip");
+        Assertions.assertEquals(game.getHistoryLength(), decoded.getHistoryLength(), "Wrong history length");
+        Assertions.assertEquals(50, decoded.getCurrentPly(), "Wrong current ply");
+        decoded.goToPly(fens.length - 1);
+        Assertions.assertEquals(fens[fens.length - 1], Fen.toFen(decoded), "Decoded history should go forward");
+        decoded.goToPly(2);
+        Assertions.assertEquals(fens[2], Fen.toFen(decoded), "Decoded history should go back");
+    }
+
+    @Test
+    @DisplayName("Saved Repetitions Count")
+    public void savedRepetitionsCount() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        for (int i = 0; i < 7; i++) {
+            game.makeMove(move(SHUFFLE[i % 4]));
+        }
+        Assertions.assertFalse(game.isThreefoldRepetition(), "Only two repetitions so far");
+
+        ChessGame decoded = GameCodec.decode(GameCodec.encode(game));
+        decoded.makeMove(move(SHUFFLE[3]));
+        Assertions.assertTrue(decoded.isThreefoldRepetition(), "Repetitions before encoding should count");
+
+        ChessGame read = ChessJson.GSON.fromJson(ChessJson.GSON.toJson(game), ChessGame.class);
+        read.makeMove(move(SHUFFLE[3]));
+        Assertions.assertTrue(read.isThreefoldRepetition(), "Repetitions before writing JSON should count");
+    }
+
+    @Test
+    @DisplayName("JSON Keeps History")
+    public void jsonKeepsHistory() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        String[] fens = playLongGame(game);
+        game.goToPly(45);
+
+        ChessGame read = ChessJson.GSON.fromJson(ChessJson.GSON.toJson(game), ChessGame.class);
+        Assertions.assertEquals(game, read, "Position should survive the round trip");
+        Assertions.assertEquals(game.getHistoryLength(), read.getHistoryLength(), "Wrong history length");
+        Assertions.assertEquals(game.getHistoryMove(44), read.getHistoryMove(44), "Wrong history move");
+        read.goToPly(0);
+        Assertions.assertEquals(fens[0], Fen.toFen(read), "Read history should go back to the start");
+    }
+
+    // Plays a few checkpoints' worth of moves, some of them irreversible, and returns the FEN after each ply
+    private static String[] playLongGame(ChessGame game) throws InvalidMoveException {
+        String[] opening = {"e2e4", "e7e5", "d2d4", "e5d4", "c2c3", "d4c3", "b1c3", "b8c6"};
+        String[] fens = new String[opening.length + 20 * SHUFFLE.length + 1];
+        int ply = 0;
+        fens[ply++] = Fen.toFen(game);
+        for (String played : opening) {
+            game.makeMove(move(played));
+            fens[ply++] = Fen.toFen(game);
+        }
+        for (int i = 0; i < 20 * SHUFFLE.length; i++) {
+            game.makeMove(move(SHUFFLE[i % 4]));
+            fens[ply++] = Fen.toFen(game);
+        }
+        return fens;
+    }
+
+    private static ChessMove move(String move) {
+        return new ChessMove(new ChessPosition(move.charAt(1) - '0', move.charAt(0) - 'a' + 1),
+                new ChessPosition(move.charAt(3) - '0', move.charAt(2) - 'a' + 1), null);
+    }
+}
@@ -0,0 +1,87 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the chain of snapshots published as moves are made, and the boards they share.
+ */
+public class GameSnapshotTests {
+
+    // Castling both ways, an en passant capture and a promotion, then a king and queen shuffling
+    private static final String[] OPENING = {"e2e4", "d4e3", "e1c1", "e8g8", "b7b8q"};
+    private static final String[] SHUFFLE = {"g8h8", "b8b7", "h8g8", "b7b8"};
+
+    @Test
+    @DisplayName("Chain Past A Checkpoint")
+    public void chainPastACheckpoint() throws InvalidMoveException {
+        ChessGame game = Fen.parse("4k2r/1P6/8/8/3p4/8/4P3/R3K3 w Qk - 0 1");
+        int plies = 2 * ChessGame.CHECKPOINT_INTERVAL + 3;
+        GameSnapshot[] snapshots = new GameSnapshot[plies + 1];
+        String[] fens = new String[plies + 1];
+        snapshots[0] = game.snapshot();
+        fens[0] = Fen.toFen(game);
+        Assertions.assertNull(snapshots[0].getPrevious(), "The first snapshot should start the chain");
+        Assertions.assertNull(snapshots[0].getLastMove(), "A chain start should have no last move");
+
+        for (int ply = 1; ply <= plies; ply++) {
+            String move = ply <= OPENING.length ? OPENING[ply - 1] : SHUFFLE[(ply - OPENING.length - 1) % 4];
+            game.makeMove(move(move));
+            snapshots[ply] = game.snapshot();
+            fens[ply] = Fen.toFen(game);
+            Assertions.assertEquals(ply, snapshots[ply].getPly(), "Ply should count every move of the game");
+            Assertions.assertSame(snapshots[ply - 1], snapshots[ply].getPrevious(),
+                    "Snapshot " + ply + " should link to the one before");
+            Assertions.assertEquals(move(move), snapshots[ply].getLastMove(), "Last move at ply " + ply);
+        }
+
+        //the latest first, so the boards are worked out by replaying moves rather than one step at a time
+        for (int ply = plies; ply >= 0; ply--) {
+            Assertions.assertEquals(fens[ply], Fen.toFen(snapshots[ply].toGame()), "Position at ply " + ply);
+        }
+        Assertions.assertEquals(new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.QUEEN),
+                snapshots[5].getPiece(new ChessPosition(8, 2)), "The promoted queen");
+        Assertions.assertEquals(new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK),
+                snapshots[3].getPiece(new ChessPosition(1, 4)), "The castled rook");
+        Assertions.assertNull(snapshots[2].getPiece(new ChessPosition(4, 5)), "The pawn taken en passant");
+    }
+
+    @Test
+    @DisplayName("Setter Starts A Chain")
+    public void setterStartsAChain() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(move("e2e4"));
+        game.makeMove(move("e7e5"));
+        game.setHalfmoveClock(7);
+        GameSnapshot snapshot = game.snapshot();
+        Assertions.assertNull(snapshot.getPrevious(), "A setter should start a new chain");
+        Assertions.assertNull(snapshot.getLastMove(), "A chain start should have no last move");
+        Assertions.assertEquals(2, snapshot.getPly(), "The ply should still count the moves made");
+
+        game.makeMove(move("g1f3"));
+        Assertions.assertSame(snapshot, game.snapshot().getPrevious(), "The next move should link to it");
+        Assertions.assertEquals(3, game.snapshot().getPly(), "Ply after the next move");
+    }
+
+    @Test
+    @DisplayName("Board Changed In Place")
+    public void boardChangedInPlace() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        GameSnapshot before = game.snapshot();
+        game.getBoard().addPiece(new ChessPosition(4, 4),
+                new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT));
+        game.makeMove(move("e2e4"));
+        GameSnapshot after = game.snapshot();
+        Assertions.assertNotNull(before, "The snapshot before the change");
+        Assertions.assertNull(after.getPrevious(), "A snapshot of a different board should not be replayed from");
+        Assertions.assertEquals(new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT),
+                after.getPiece(new ChessPosition(4, 4)), "The knight added in place");
+    }
+
+    private static ChessMove move(String uci) {
+        ChessPiece.PieceType promotion = uci.length() > 4 ? ChessPiece.PieceType.QUEEN : null;
+        return new ChessMove(new ChessPosition(uci.charAt(1) - '0', uci.charAt(0) - 'a' + 1),
+                new ChessPosition(uci.charAt(3) - '0', uci.charAt(2) - 'a' + 1), promotion);
+    }
+}
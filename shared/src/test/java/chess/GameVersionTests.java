@@ -0,0 +1,140 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Checks the game version, the snapshots published with it, and tryMakeMove against a stale version.
+ */
+public class GameVersionTests {
+
+    @Test
+    @DisplayName("Snapshots Follow Version")
+    public void snapshotsFollowVersion() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        long version = game.getVersion();
+        Assertions.assertEquals(version, game.snapshot().getVersion(), "Fresh snapshot should match");
+
+        game.makeMove(move("e2e4"));
+        game.setHalfmoveClock(3);
+        game.setFullmoveNumber(12);
+        Assertions.assertEquals(version + 3, game.getVersion(), "Each change should add one to the version");
+        GameSnapshot snapshot = game.snapshot();
+        Assertions.assertEquals(game.getVersion(), snapshot.getVersion(), "Snapshot should match the version");
+        Assertions.assertEquals(12, snapshot.getFullmoveNumber(), "Snapshot should have the fullmove number set");
+        Assertions.assertEquals(Fen.toFen(game), Fen.toFen(snapshot.toGame()), "Snapshot should match the game");
+    }
+
+    @Test
+    @DisplayName("Stale Version")
+    public void staleVersion() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        long version = game.getVersion();
+        Assertions.assertTrue(game.tryMakeMove(move("e2e4"), version), "Move against the current version");
+        Assertions.assertFalse(game.tryMakeMove(move("e7e5"), version), "Move against a stale version");
+        Assertions.assertEquals(ChessGame.TeamColor.BLACK, game.getTeamTurn(), "Stale move should not be made");
+
+        Assertions.assertThrows(InvalidMoveException.class,
+                () -> game.tryMakeMove(move("e7e4"), game.getVersion()));
+        Assertions.assertTrue(game.tryMakeMove(move("e7e5"), game.getVersion()), "Move after a failed attempt");
+    }
+
+    @Test
+    @DisplayName("Racing Moves")
+    public void racingMoves() throws InterruptedException {
+        ChessGame game = new ChessGame();
+        long version = game.getVersion();
+        String[] moves = {"e2e4", "d2d4", "c2c4", "g1f3"};
+        AtomicInteger made = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[moves.length];
+        for (int i = 0; i < threads.length; i++) {
+            ChessMove played = move(moves[i]);
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                    if (game.tryMakeMove(played, version)) {
+                        made.incrementAndGet();
+                    }
+                } catch (InterruptedException | InvalidMoveException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assertions.assertEquals(1, made.get(), "Only one of the racing moves should land");
+        Assertions.assertEquals(1, game.getHistoryLength(), "The game should have one move");
+        Assertions.assertEquals(ChessGame.TeamColor.BLACK, game.snapshot().getTeamTurn(),
+                "The snapshot should show the move");
+    }
+
+    @Test
+    @DisplayName("Readers During Moves")
+    public void readersDuringMoves() throws InterruptedException, InvalidMoveException {
+        String[] shuffle = {"g1f3", "g8f6", "f3g1", "f6g8"};
+        //the number of legal moves for the team to move in each position of the shuffle, by Zobrist key
+        Map<Long, Integer> legalCounts = new HashMap<>();
+        ChessGame expected = new ChessGame();
+        MoveList moves = new MoveList();
+        for (String played : shuffle) {
+            expected.legalMoves(expected.getTeamTurn(), moves);
+            legalCounts.put(expected.getZobristKey(), moves.size());
+            expected.makeMove(move(played));
+        }
+
+        ChessGame game = new ChessGame();
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        AtomicInteger reads = new AtomicInteger();
+        Thread[] readers = new Thread[2];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread(() -> {
+                MoveList legal = new MoveList();
+                while (!done.get() && failure.get() == null) {
+                    if (game.validMoves(new ChessPosition(2, 5)).size() != 2) {
+                        failure.set("The e2 pawn should always have two moves");
+                    } else if (game.isInCheck(ChessGame.TeamColor.WHITE) || !game.hasAnyLegalMove(game.getTeamTurn())) {
+                        failure.set("No position of the shuffle has a check or a side without moves");
+                    } else if (!legalCounts.containsKey(game.getZobristKey())) {
+                        failure.set("Read a key that isn't one of the shuffle's positions");
+                    } else {
+                        GameSnapshot snapshot = game.snapshot();
+                        snapshot.toGame().legalMoves(snapshot.getTeamTurn(), legal);
+                        if (legalCounts.get(snapshot.getZobristKey()) != legal.size()) {
+                            failure.set("A snapshot should describe one position of the shuffle");
+                        }
+                    }
+                    reads.incrementAndGet();
+                }
+            });
+            readers[i].start();
+        }
+        for (int ply = 0; ply < 4000; ply++) {
+            game.makeMove(move(shuffle[ply % shuffle.length]));
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        Assertions.assertNull(failure.get(), "Readers should only see whole positions");
+        Assertions.assertTrue(reads.get() > 0, "The readers should have run");
+        Assertions.assertEquals(4000, game.getCurrentPly(), "Every move should have been made");
+    }
+
+    private static ChessMove move(String move) {
+        return new ChessMove(new ChessPosition(move.charAt(1) - '0', move.charAt(0) - 'a' + 1),
+                new ChessPosition(move.charAt(3) - '0', move.charAt(2) - 'a' + 1), null);
+    }
+}
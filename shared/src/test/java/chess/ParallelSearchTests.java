@@ -0,0 +1,60 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks searching with helper threads over one shared transposition table.
+ */
+public class ParallelSearchTests {
+
+    private static final String MIDGAME = "r1bqk2r/pppp1ppp/2n2n2/2b1p3/2B1P3/3P1N2/PPP2PPP/RNBQK2R w KQkq - 1 5";
+
+    @Test
+    @DisplayName("Helpers Find Mate")
+    public void helpersFindMate() {
+        ChessEngine engine = new ChessEngine(new TranspositionTable(8), null);
+        ChessEngine.Result result = engine.search(
+                Fen.parse("r1b2k1r/ppp1bppp/8/1B1Q4/5q2/2P5/PPP2PPP/R3R1K1 w - - 1 10"),
+                ChessEngine.Limits.depth(6).withThreads(4));
+        Assertions.assertEquals(ChessEngine.MATE - 3, result.score(), "Helpers should not spoil the mate score");
+        Assertions.assertEquals(new ChessMove(new ChessPosition(5, 4), new ChessPosition(8, 4), null),
+                result.bestMove(), "Should find the queen sacrifice");
+    }
+
+    @Test
+    @DisplayName("Helpers Share The Work")
+    public void helpersShareTheWork() throws InvalidMoveException {
+        ChessGame position = Fen.parse(MIDGAME);
+        ChessEngine engine = new ChessEngine(new TranspositionTable(8), null);
+        ChessEngine.Result result = engine.search(position, ChessEngine.Limits.depth(5).withThreads(3));
+        Assertions.assertEquals(5, result.depth(), "The main thread should finish every iteration");
+        Assertions.assertTrue(engine.getTable().hits() > 0, "Threads should find each other's entries");
+        position.makeMove(result.bestMove());
+
+        //the same engine searches again with its helpers already made
+        ChessEngine.Result reply = engine.search(position, ChessEngine.Limits.depth(4).withThreads(3));
+        Assertions.assertDoesNotThrow(() -> position.makeMove(reply.bestMove()), "The reply should be legal");
+    }
+
+    @Test
+    @DisplayName("Stop From Another Thread")
+    public void stopFromAnotherThread() throws InterruptedException {
+        ChessGame position = Fen.parse(MIDGAME);
+        ChessEngine engine = new ChessEngine(new TranspositionTable(8), null);
+        Thread stopper = new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                return;
+            }
+            engine.stop();
+        });
+        stopper.start();
+        ChessEngine.Result result = engine.search(position, ChessEngine.Limits.depth(60).withThreads(2));
+        stopper.join();
+        Assertions.assertTrue(result.nanos() < 10_000_000_000L, "The search should end soon after stop");
+        Assertions.assertDoesNotThrow(() -> position.makeMove(result.bestMove()), "The move should be legal");
+    }
+}
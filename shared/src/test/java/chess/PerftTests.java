@@ -0,0 +1,71 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Map;
+
+/**
+ * Checks move generation against published perft counts. These walk millions of positions, so the default
+ * build skips them; run them with {@code mvn -pl shared test -Pperft}.
+ */
+@Tag("perft")
+public class PerftTests {
+
+    @Test
+    @DisplayName("Standard Position Counts")
+    public void standardPositions() {
+        for (Perft.Position position : Perft.STANDARD_POSITIONS) {
+            for (int depth = 1; depth <= position.expected().length; depth++) {
+                Assertions.assertEquals(position.expected()[depth - 1], Perft.perft(position.toGame(), depth),
+                        "Wrong perft count for " + position.name() + " at depth " + depth);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Divide Adds Up To Perft")
+    public void divideMatchesPerft() {
+        ChessGame game = new ChessGame();
+        Map<ChessMove, Long> divide = Perft.divide(game, 3);
+        Assertions.assertEquals(20, divide.size(), "Wrong number of root moves");
+        Assertions.assertEquals(8902L, divide.values().stream().mapToLong(Long::longValue).sum(),
+                "Divide counts don't add up to the perft count");
+    }
+
+    @Test
+    @DisplayName("Command Line From FEN")
+    public void commandLineFromFen() throws InterruptedException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        String[] args = ("2 divide " + Perft.STANDARD_POSITIONS.get(1).fen()).split(" ");
+        Assertions.assertEquals(0, Perft.run(args, new PrintStream(bytes, true)), "Divide should succeed");
+        Assertions.assertTrue(bytes.toString().endsWith("total: 2039" + System.lineSeparator()),
+                "Divide should count from the FEN given, not the start");
+
+        bytes.reset();
+        Assertions.assertEquals(0, Perft.run(new String[]{"3", "2", Perft.STANDARD_POSITIONS.get(2).fen()},
+                new PrintStream(bytes, true)), "Depth run should succeed");
+        Assertions.assertTrue(bytes.toString().startsWith(String.format("depth 3: %,d nodes", 2812)),
+                "Depth run from one FEN argument");
+    }
+
+    @Test
+    @DisplayName("Parallel Matches Single Threaded")
+    public void parallelMatchesSingleThreaded() throws InterruptedException {
+        ChessGame game = new ChessGame();
+        Assertions.assertEquals(197281L, Perft.parallel(game, 4, 4).nodes(), "Wrong parallel perft count");
+    }
+
+    @Test
+    @DisplayName("Perft Leaves Game Unchanged")
+    public void perftRestoresGame() {
+        ChessGame game = Perft.STANDARD_POSITIONS.get(1).toGame();
+        ChessGame before = new ChessGame(game);
+        Perft.perft(game, 3);
+        Assertions.assertEquals(before, game, "Perft did not restore the position");
+    }
+}
@@ -0,0 +1,149 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks reading and writing PGN, SAN in both directions, and replaying a stream of games on worker threads.
+ */
+public class PgnTests {
+
+    private static final String SCHOLARS_MATE = """
+            [Event "Casual"]
+            % an escape line, 1. a4 is not a move here
+            [Result "1-0"]
+
+            1. e4 {the king's pawn} e5 (1... c5 2. Nf3) 2. Qh5 $1 Nc6 ; a comment to the end of the line
+            3. Bc4 % Nf6?? 4. Qxf7# 1-0
+            """;
+
+    @Test
+    @DisplayName("Read Movetext")
+    public void readMovetext() throws IOException {
+        PgnReader reader = reader(SCHOLARS_MATE);
+        PgnReader.Game game = reader.next();
+        Assertions.assertEquals(List.of("e4", "e5", "Qh5", "Nc6", "Bc4", "Nf6??", "Qxf7#"), game.moves(),
+                "Wrong moves");
+        Assertions.assertEquals("1-0", game.result(), "Wrong result");
+        Assertions.assertEquals(Map.of("Event", "Casual", "Result", "1-0"), game.tags(), "Wrong tags");
+        Assertions.assertNull(reader.next(), "Only one game in the input");
+
+        BulkValidator.Result result = BulkValidator.replay(game);
+        Assertions.assertTrue(result.valid(), "Every move is legal");
+        Assertions.assertEquals(BulkValidator.Outcome.CHECKMATE, result.outcome(), "The game ends in mate");
+    }
+
+    @Test
+    @DisplayName("Write And Read Back")
+    public void writeAndReadBack() throws IOException {
+        //castling both ways, an en passant capture, a promotion with capture and a capture with check
+        List<ChessMove> moves = moves("e2e4", "d7d5", "e4e5", "f7f5", "e5f6", "g8h6", "g1f3", "b8c6", "f1e2",
+                "c8e6", "e1g1", "d8d7", "f6g7", "e8c8", "g7h8q", "c6e5", "b1c3", "e5f3", "g2f3");
+        Map<String, String> tags = new LinkedHashMap<>();
+        tags.put("Event", "Round \"trip\"");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PgnWriter writer = new PgnWriter(out)) {
+            writer.write(tags, moves, "*");
+        }
+        String text = out.toString(StandardCharsets.UTF_8);
+        Assertions.assertTrue(text.contains("3. exf6 Nh6"), "En passant should be written as a pawn capture");
+        Assertions.assertTrue(text.contains("6. O-O Qd7 7. fxg7 O-O-O"), "Castling should be written in SAN");
+        Assertions.assertTrue(text.contains("gxh8=Q Ne5 9. Nc3 Nxf3+"), "Promotion and check should be written");
+
+        PgnReader.Game game = reader(text).next();
+        Assertions.assertEquals("Round \"trip\"", game.tags().get("Event"), "Escaped tag value");
+        ChessGame replayed = new ChessGame();
+        for (int ply = 0; ply < moves.size(); ply++) {
+            int move = San.parse(replayed, game.moves().get(ply));
+            Assertions.assertEquals(Move.fromChessMove(moves.get(ply)), Move.withoutFlags(move),
+                    "Wrong move read back at ply " + ply);
+            replayed.doMove(move);
+        }
+    }
+
+    @Test
+    @DisplayName("Illegal SAN")
+    public void illegalSan() throws IOException {
+        PgnReader.Game game = reader("1. e4 e5 2. Ke3 Nc6 *").next();
+        BulkValidator.Result result = BulkValidator.replay(game);
+        Assertions.assertEquals(2, result.firstIllegalPly(), "The king can't reach e3");
+        Assertions.assertEquals(-1, San.parse(new ChessGame(), "Nd2"), "No knight can reach d2");
+    }
+
+    @Test
+    @DisplayName("Check Suffix Keeps Move Cache")
+    public void checkSuffixKeepsMoveCache() {
+        ChessGame game = Fen.parse("4k3/8/8/8/8/8/8/R3K3 w Q - 0 1");
+        MoveList moves = game.turnMoves();
+        int size = moves.size();
+        int check = San.parse(game, "Ra8");
+        StringBuilder out = new StringBuilder();
+        San.append(game, check, out);
+        Assertions.assertEquals("Ra8+", out.toString(), "SAN with the check suffix");
+        Assertions.assertEquals(size, moves.size(), "Writing the suffix should leave the cached moves alone");
+        Assertions.assertEquals(check, San.parse(game, "Ra8"), "The cached moves should still be white's");
+    }
+
+    @Test
+    @DisplayName("Stream Of Games")
+    public void streamOfGames() throws IOException, InterruptedException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            text.append(i % 10 == 0 ? "1. e4 e5 2. Ke3 *\n\n" : SCHOLARS_MATE).append('\n');
+        }
+        AtomicInteger mates = new AtomicInteger();
+        BulkValidator.Summary summary = BulkValidator.replay(reader(text.toString()), 4, (game, result) -> {
+            if (result.outcome() == BulkValidator.Outcome.CHECKMATE) {
+                mates.incrementAndGet();
+            }
+        });
+        Assertions.assertEquals(500, summary.games(), "Every game should be replayed");
+        Assertions.assertEquals(50, summary.invalidGames(), "Every tenth game has an illegal move");
+        Assertions.assertEquals(450, mates.get(), "The other games end in mate");
+    }
+
+    @Test
+    @DisplayName("Worker Error Stops Replay")
+    public void workerErrorStopsReplay() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append(SCHOLARS_MATE).append('\n');
+        }
+        List<PgnReader.Game> seen = new ArrayList<>();
+        Error thrown = Assertions.assertThrows(Error.class, () -> BulkValidator.replay(reader(text.toString()), 2,
+                (game, result) -> {
+                    synchronized (seen) {
+                        seen.add(game);
+                    }
+                    throw new Error("sink failed");
+                }));
+        Assertions.assertEquals("sink failed", thrown.getMessage(), "The sink's error should be rethrown");
+        Assertions.assertTrue(seen.size() < 2000, "Games after the failure should not be replayed");
+    }
+
+    private static PgnReader reader(String text) {
+        return new PgnReader(Channels.newChannel(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private static List<ChessMove> moves(String... moves) {
+        List<ChessMove> parsed = new ArrayList<>();
+        for (String move : moves) {
+            ChessPiece.PieceType promotion = move.length() == 5 ? ChessPiece.PieceType.QUEEN : null;
+            parsed.add(new ChessMove(new ChessPosition(move.charAt(1) - '0', move.charAt(0) - 'a' + 1),
+                    new ChessPosition(move.charAt(3) - '0', move.charAt(2) - 'a' + 1), promotion));
+        }
+        return parsed;
+    }
+}
@@ -0,0 +1,103 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks Polyglot keys against the test positions published with the format, and lookups in a small book.
+ */
+public class PolyglotBookTests {
+
+    @Test
+    @DisplayName("Starting Position Key")
+    public void startingPositionKey() {
+        Assertions.assertEquals(0x463B96181691FC9CL, PolyglotBook.standardKey(new ChessGame()),
+                "Wrong Polyglot key for the starting position");
+    }
+
+    @Test
+    @DisplayName("Key After 1.e4")
+    public void keyAfterKingsPawn() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(move("e2e4"));
+        //no black pawn can take on e3, so the en passant file is left out of the key
+        Assertions.assertEquals(0x823C9B50FD114196L, PolyglotBook.standardKey(game), "Wrong key after 1.e4");
+    }
+
+    @Test
+    @DisplayName("Published Test Positions")
+    public void publishedTestPositions() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        long[] expected = {0x0756B94461C50FB0L, 0x662FAFB965DB29D4L, 0x22A48B5A8E47FF78L, 0x652A607CA3F242C1L,
+                0x00FDD303C946BDD9L};
+        String[] moves = {"d7d5", "e4e5", "f7f5", "e1e2", "e8f7"};
+        game.makeMove(move("e2e4"));
+        for (int i = 0; i < moves.length; i++) {
+            game.makeMove(move(moves[i]));
+            Assertions.assertEquals(expected[i], PolyglotBook.standardKey(game), "Wrong key after " + moves[i]);
+        }
+
+        game = new ChessGame();
+        for (String played : new String[]{"a2a4", "b7b5", "h2h4", "b5b4", "c2c4"}) {
+            game.makeMove(move(played));
+        }
+        Assertions.assertEquals(0x3C8123EA7B067637L, PolyglotBook.standardKey(game),
+                "Wrong key with an en passant capture open");
+        game.makeMove(move("b4c3"));
+        game.makeMove(move("a1a3"));
+        Assertions.assertEquals(0x5C3F9B829B279560L, PolyglotBook.standardKey(game),
+                "Wrong key after losing a castling right");
+    }
+
+    @Test
+    @DisplayName("Book Lookup")
+    public void bookLookup() throws IOException, InvalidMoveException {
+        ChessGame game = new ChessGame();
+        long start = PolyglotBook.standardKey(game);
+        game.makeMove(move("e2e4"));
+        long afterE4 = PolyglotBook.standardKey(game);
+
+        //entries sorted by key: two replies from the start, one of them heavier, and one after 1.e4
+        ByteBuffer entries = ByteBuffer.allocate(3 * 16);
+        long[] keys = {start, start, afterE4};
+        String[] moves = {"d2d4", "e2e4", "c7c5"};
+        int[] weights = {10, 30, 5};
+        Integer[] order = {0, 1, 2};
+        Arrays.sort(order, (a, b) -> Long.compareUnsigned(keys[a], keys[b]));
+        for (int i : order) {
+            entries.putLong(keys[i]).putShort(polyglotMove(moves[i])).putShort((short) weights[i]).putInt(0);
+        }
+        Path file = Files.createTempFile("book", ".bin");
+        try {
+            Files.write(file, entries.array());
+            PolyglotBook book = PolyglotBook.open(file);
+            Assertions.assertEquals(3, book.size(), "Wrong entry count");
+            Assertions.assertEquals(move("e2e4"), book.bestMove(new ChessGame()), "Wrong heaviest book move");
+            Assertions.assertEquals(move("c7c5"), book.pickMove(game, new Random(1)), "Wrong reply to 1.e4");
+            game.makeMove(move("c7c5"));
+            Assertions.assertNull(book.bestMove(game), "Position out of the book should have no move");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static short polyglotMove(String move) {
+        ChessMove parsed = move(move);
+        int from = ChessBoard.square(parsed.getStartPosition());
+        int to = ChessBoard.square(parsed.getEndPosition());
+        return (short) (from << 6 | to);
+    }
+
+    private static ChessMove move(String move) {
+        return new ChessMove(new ChessPosition(move.charAt(1) - '0', move.charAt(0) - 'a' + 1),
+                new ChessPosition(move.charAt(3) - '0', move.charAt(2) - 'a' + 1), null);
+    }
+}
@@ -0,0 +1,98 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the rules state a game keeps besides the pieces: castling rights, the en passant square, the move
+ * counters, and the repetition and fifty-move draws that depend on them.
+ */
+public class RulesStateTests {
+
+    private static final String[] SHUFFLE = {"g1f3", "g8f6", "f3g1", "f6g8"};
+
+    @Test
+    @DisplayName("Threefold Repetition")
+    public void threefoldRepetition() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        for (int i = 0; i < 8; i++) {
+            Assertions.assertFalse(game.isThreefoldRepetition(), "No threefold repetition after " + i + " plies");
+            game.makeMove(move(SHUFFLE[i % 4]));
+        }
+        Assertions.assertTrue(game.isThreefoldRepetition(), "The start position has now been seen three times");
+
+        game.makeMove(move("e2e4"));
+        Assertions.assertFalse(game.isThreefoldRepetition(), "A pawn move starts over");
+    }
+
+    @Test
+    @DisplayName("Lost Castling Rights Change The Position")
+    public void lostCastlingRightsChangeThePosition() throws InvalidMoveException {
+        ChessGame game = Fen.parse("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1");
+        //the kings step out and back twice; the first return is the first position without castling rights
+        String[] moves = {"e1e2", "e8e7", "e2e1", "e7e8", "e1e2", "e8e7", "e2e1", "e7e8"};
+        for (String played : moves) {
+            game.makeMove(move(played));
+        }
+        Assertions.assertEquals(0, game.getCastlingRights(), "Moving the kings should lose every right");
+        Assertions.assertFalse(game.isThreefoldRepetition(), "The start had castling rights, so it only counts twice");
+        game.makeMove(move("e1e2"));
+        game.makeMove(move("e8e7"));
+        game.makeMove(move("e2e1"));
+        game.makeMove(move("e7e8"));
+        Assertions.assertTrue(game.isThreefoldRepetition(), "The position without rights has now been seen three times");
+    }
+
+    @Test
+    @DisplayName("Castling Rights")
+    public void castlingRights() throws InvalidMoveException {
+        ChessGame game = Fen.parse("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1");
+        game.makeMove(move("a1a8"));
+        Assertions.assertEquals(ChessGame.WHITE_KINGSIDE | ChessGame.BLACK_KINGSIDE, game.getCastlingRights(),
+                "The rook moving and the rook taken should each lose a queenside right");
+        game.makeMove(move("e8e7"));
+        Assertions.assertEquals(ChessGame.WHITE_KINGSIDE, game.getCastlingRights(),
+                "The king moving should lose black's last right");
+    }
+
+    @Test
+    @DisplayName("En Passant Square")
+    public void enPassantSquare() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(move("e2e4"));
+        Assertions.assertEquals(new ChessPosition(3, 5), game.getEnPassantSquare(), "e3 was passed over");
+        game.makeMove(move("g8f6"));
+        Assertions.assertNull(game.getEnPassantSquare(), "The chance is gone after one move");
+
+        //the key only changes when a pawn could really capture
+        ChessGame withSquare = Fen.parse("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1");
+        ChessGame withoutSquare = Fen.parse("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1");
+        Assertions.assertEquals(withoutSquare.getZobristKey(), withSquare.getZobristKey(),
+                "No black pawn can take on e3");
+        ChessGame capturable = Fen.parse("rnbqkbnr/ppp1pppp/8/8/3pP3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1");
+        ChessGame notCapturable = Fen.parse("rnbqkbnr/ppp1pppp/8/8/3pP3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1");
+        Assertions.assertNotEquals(notCapturable.getZobristKey(), capturable.getZobristKey(),
+                "The d4 pawn can take on e3");
+    }
+
+    @Test
+    @DisplayName("Fifty Move Rule")
+    public void fiftyMoveRule() throws InvalidMoveException {
+        ChessGame game = Fen.parse("4k3/8/8/8/8/8/4P3/4K2R w - - 98 80");
+        game.makeMove(move("h1h2"));
+        Assertions.assertFalse(game.isFiftyMoveDraw(), "Only 99 plies without progress");
+        game.makeMove(move("e8d8"));
+        Assertions.assertTrue(game.isFiftyMoveDraw(), "100 plies without a capture or pawn move");
+        Assertions.assertEquals(81, game.getFullmoveNumber(), "Black's move should start move 81");
+
+        game.makeMove(move("e2e4"));
+        Assertions.assertEquals(0, game.getHalfmoveClock(), "A pawn move should reset the clock");
+        Assertions.assertFalse(game.isFiftyMoveDraw(), "The clock starts over");
+    }
+
+    private static ChessMove move(String move) {
+        return new ChessMove(new ChessPosition(move.charAt(1) - '0', move.charAt(0) - 'a' + 1),
+                new ChessPosition(move.charAt(3) - '0', move.charAt(2) - 'a' + 1), null);
+    }
+}
@@ -0,0 +1,83 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+
+/**
+ * Checks storing and probing entries, the replacement rules, and that a slot whose halves don't match is
+ * never returned as a hit.
+ */
+public class TranspositionTableTests {
+
+    private static final long KEY = 0x1234_5678_9ABC_DEF0L;
+
+    @Test
+    @DisplayName("Store And Probe")
+    public void storeAndProbe() {
+        TranspositionTable table = new TranspositionTable(1);
+        int move = Move.encode(12, 28, null, Move.DOUBLE_PUSH);
+        table.store(KEY, 7, TranspositionTable.LOWER_BOUND, -345, move);
+
+        long entry = table.probe(KEY);
+        Assertions.assertNotEquals(0L, entry, "Stored position should be found");
+        Assertions.assertEquals(move, TranspositionTable.move(entry), "Wrong move");
+        Assertions.assertEquals(-345, TranspositionTable.score(entry), "Wrong score");
+        Assertions.assertEquals(7, TranspositionTable.depth(entry), "Wrong depth");
+        Assertions.assertEquals(TranspositionTable.LOWER_BOUND, TranspositionTable.bound(entry), "Wrong bound");
+        Assertions.assertEquals(0L, table.probe(KEY + 1), "Another position should not be found");
+        Assertions.assertEquals(1, table.hits(), "One probe should have hit");
+
+        table.clear();
+        Assertions.assertEquals(0L, table.probe(KEY), "Cleared table should be empty");
+    }
+
+    @Test
+    @DisplayName("Replacement")
+    public void replacement() {
+        TranspositionTable table = new TranspositionTable(1);
+        long sameSlot = KEY + table.capacity();
+        table.store(KEY, 8, TranspositionTable.EXACT, 10, 0);
+        table.store(sameSlot, 3, TranspositionTable.EXACT, 20, 0);
+        Assertions.assertNotEquals(0L, table.probe(KEY), "A shallower entry should not replace a deeper one");
+        Assertions.assertEquals(0L, table.probe(sameSlot), "The shallower entry should be dropped");
+        Assertions.assertEquals(1, table.collisions(), "Probing the other key should count a collision");
+
+        table.newSearch();
+        table.store(sameSlot, 3, TranspositionTable.EXACT, 20, 0);
+        Assertions.assertEquals(20, TranspositionTable.score(table.probe(sameSlot)),
+                "An entry from an earlier search should always be replaced");
+
+        int move = Move.encode(1, 18, null, 0);
+        table.store(sameSlot, 5, TranspositionTable.UPPER_BOUND, 30, move);
+        table.store(sameSlot, 6, TranspositionTable.LOWER_BOUND, 40, 0);
+        Assertions.assertEquals(move, TranspositionTable.move(table.probe(sameSlot)),
+                "A new result without a move should keep the old move");
+    }
+
+    @Test
+    @DisplayName("Torn Entry Rejected")
+    public void tornEntryRejected() throws ReflectiveOperationException {
+        TranspositionTable table = new TranspositionTable(1);
+        table.store(KEY, 4, TranspositionTable.EXACT, 50, 0);
+        Field field = TranspositionTable.class.getDeclaredField("entries");
+        field.setAccessible(true);
+        ByteBuffer entries = (ByteBuffer) field.get(table);
+        int offset = (int) (KEY & (table.capacity() - 1)) * 16;
+
+        //as if another thread's data had landed next to this key check
+        entries.putLong(offset + 8, entries.getLong(offset + 8) ^ 1L << 30);
+        Assertions.assertEquals(0L, table.probe(KEY), "A slot whose halves don't match should be a miss");
+        Assertions.assertEquals(1, table.collisions(), "The torn slot should count as a collision");
+    }
+
+    @Test
+    @DisplayName("Size Limits")
+    public void sizeLimits() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new TranspositionTable(0));
+        Assertions.assertEquals(65536, new TranspositionTable(1).capacity(), "1 MB holds 65536 entries");
+    }
+}
@@ -0,0 +1,104 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Checks that validMoves answered from the per-position table of the side to move agrees with generating the
+ * moves directly, and that the table is rebuilt whenever the position changes.
+ */
+public class ValidMovesIndexTests {
+
+    private static final String[] POSITIONS = {
+            Fen.START,
+            //castling both ways for both sides
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            //en passant
+            "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3",
+            //promotions with and without capture
+            "n1n5/PPPk4/8/8/8/8/4Kppp/5N1N b - - 0 1",
+            //in check, with pinned pieces
+            "4k3/8/8/1b6/8/3N4/4R3/r3K3 w - - 0 1",
+    };
+
+    @Test
+    @DisplayName("Matches Generated Moves")
+    public void matchesGeneratedMoves() {
+        for (String fen : POSITIONS) {
+            ChessGame game = Fen.parse(fen);
+            for (ChessGame.TeamColor team : ChessGame.TeamColor.values()) {
+                MoveList moves = new MoveList();
+                game.legalMoves(team, moves);
+                for (int square = 0; square < 64; square++) {
+                    ChessPosition position = new ChessPosition(square / 8 + 1, square % 8 + 1);
+                    ChessPiece piece = game.getBoard().getPiece(position);
+                    if (piece == null || piece.getTeamColor() != team) {
+                        continue;
+                    }
+                    Set<ChessMove> expected = new HashSet<>();
+                    for (int i = 0; i < moves.size(); i++) {
+                        if (Move.from(moves.get(i)) == square) {
+                            expected.add(Move.toChessMove(moves.get(i)));
+                        }
+                    }
+                    Collection<ChessMove> valid = game.validMoves(position);
+                    Assertions.assertEquals(expected.size(), valid.size(), "Duplicate moves in " + fen);
+                    Assertions.assertEquals(expected, new HashSet<>(valid),
+                            "Wrong moves from " + position + " in " + fen);
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Special Moves Listed")
+    public void specialMovesListed() {
+        ChessGame castling = Fen.parse(POSITIONS[1]);
+        Assertions.assertTrue(castling.validMoves(new ChessPosition(1, 5)).containsAll(Set.of(
+                move("e1g1", null), move("e1c1", null))), "The king should be able to castle both ways");
+
+        ChessGame enPassant = Fen.parse(POSITIONS[2]);
+        Assertions.assertTrue(enPassant.validMoves(new ChessPosition(5, 5)).contains(move("e5f6", null)),
+                "The pawn should be able to capture en passant");
+
+        ChessGame promotion = Fen.parse(POSITIONS[3]);
+        Collection<ChessMove> moves = promotion.validMoves(new ChessPosition(2, 7));
+        Assertions.assertEquals(12, moves.size(), "Four promotions straight ahead and four capturing each way");
+        Assertions.assertTrue(moves.contains(move("g2h1", ChessPiece.PieceType.KNIGHT)), "Underpromotion capture");
+    }
+
+    @Test
+    @DisplayName("Table Follows Position")
+    public void tableFollowsPosition() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        ChessPosition knight = new ChessPosition(1, 7);
+        Assertions.assertEquals(2, game.validMoves(knight).size(), "The knight starts with two moves");
+        Assertions.assertThrows(InvalidMoveException.class, () -> game.makeMove(move("g1e2", null)));
+
+        game.makeMove(move("e2e4", null));
+        Assertions.assertEquals(5, game.validMoves(new ChessPosition(1, 6)).size(),
+                "White's bishop is free after e4");
+        Assertions.assertEquals(2, game.validMoves(new ChessPosition(8, 7)).size(), "Black's knight to move");
+        game.makeMove(move("e7e5", null));
+        Assertions.assertEquals(3, game.validMoves(knight).size(), "The knight can go to e2 after e4");
+        game.makeMove(move("g1e2", null));
+        Assertions.assertEquals(1, game.validMoves(new ChessPosition(8, 5)).size(), "The king can step to e7");
+
+        //changing the board in place must not leave the old table behind
+        game.getBoard().addPiece(new ChessPosition(6, 6), new ChessPiece(ChessGame.TeamColor.WHITE,
+                ChessPiece.PieceType.PAWN));
+        Assertions.assertTrue(game.validMoves(new ChessPosition(8, 5)).isEmpty(), "The new pawn covers e7");
+        Assertions.assertEquals(3, game.validMoves(new ChessPosition(8, 7)).size(),
+                "The knight can go to e7 or h6 or take the pawn on f6");
+    }
+
+    private static ChessMove move(String move, ChessPiece.PieceType promotion) {
+        return new ChessMove(new ChessPosition(move.charAt(1) - '0', move.charAt(0) - 'a' + 1),
+                new ChessPosition(move.charAt(3) - '0', move.charAt(2) - 'a' + 1), promotion);
+    }
+}